@@ -0,0 +1,114 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.framework;
+
+/**
+ * Converts lexicon IDs which are UUIDs (such as those of the Portuguese
+ * lexicon, eg "febddf86-5908-4854-91fe-1447d88fd1bf") to and from two
+ * <code>long</code>s, so they can be stored in 16 bytes instead of as a
+ * 36-character string. Only IDs in the canonical lower-case form are
+ * converted, so converting back always gives the same string.
+ */
+public final class CompactUUID {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	// no instances; all methods are static
+	private CompactUUID() {
+	}
+
+	/**
+	 * @param id
+	 * @return <code>true</code> if the ID is a UUID in canonical lower-case
+	 *         form (and not the nil UUID), so it can be stored as two longs
+	 */
+	public static boolean isUUID(String id) {
+		if (id == null || id.length() != 36)
+			return false;
+		boolean zero = true;
+		for (int i = 0; i < 36; i++) {
+			char c = id.charAt(i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-')
+					return false;
+			} else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+				return false;
+			} else if (c != '0') {
+				zero = false;
+			}
+		}
+		return !zero;
+	}
+
+	/**
+	 * @param id
+	 *            - a UUID, see {@link #isUUID(String)}
+	 * @return its most significant 64 bits
+	 */
+	public static long high(String id) {
+		return parse(id, 0, 18);
+	}
+
+	/**
+	 * @param id
+	 *            - a UUID, see {@link #isUUID(String)}
+	 * @return its least significant 64 bits
+	 */
+	public static long low(String id) {
+		return parse(id, 19, 36);
+	}
+
+	/**
+	 * @param high
+	 * @param low
+	 * @return the UUID in canonical lower-case form
+	 */
+	public static String toString(long high, long low) {
+		char[] chars = new char[36];
+		format(high, chars, 0, 18);
+		format(low, chars, 19, 36);
+		chars[8] = '-';
+		chars[13] = '-';
+		chars[18] = '-';
+		chars[23] = '-';
+		return new String(chars);
+	}
+
+	/* hex digits from start to end, skipping hyphens */
+	private static long parse(String id, int start, int end) {
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			char c = id.charAt(i);
+			if (c != '-')
+				value = (value << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+		}
+		return value;
+	}
+
+	/* hex digits from end back to start, leaving room for hyphens */
+	private static void format(long value, char[] chars, int start, int end) {
+		for (int i = end - 1; i >= start; i--) {
+			if (i == 8 || i == 13 || i == 23)
+				continue;
+			chars[i] = HEX[(int) (value & 0xf)];
+			value >>>= 4;
+		}
+	}
+
+}
@@ -106,6 +106,7 @@ public abstract class NLGElement {
 	 */
 	public void setFeature(String featureName, Object featureValue) {
 		if (featureName != null) {
+			prepareFeatureUpdate();
 			if (featureValue == null) {
 				this.features.remove(featureName);
 			} else {
@@ -124,7 +125,8 @@ public abstract class NLGElement {
 	 */
 	public void setFeature(String featureName, boolean featureValue) {
 		if (featureName != null) {
-			this.features.put(featureName, new Boolean(featureValue));
+			prepareFeatureUpdate();
+			this.features.put(featureName, Boolean.valueOf(featureValue));
 		}
 	}
 
@@ -138,7 +140,8 @@ public abstract class NLGElement {
 	 */
 	public void setFeature(String featureName, int featureValue) {
 		if (featureName != null) {
-			this.features.put(featureName, new Integer(featureValue));
+			prepareFeatureUpdate();
+			this.features.put(featureName, Integer.valueOf(featureValue));
 		}
 	}
 
@@ -152,7 +155,8 @@ public abstract class NLGElement {
 	 */
 	public void setFeature(String featureName, long featureValue) {
 		if (featureName != null) {
-			this.features.put(featureName, new Long(featureValue));
+			prepareFeatureUpdate();
+			this.features.put(featureName, Long.valueOf(featureValue));
 		}
 	}
 
@@ -166,6 +170,7 @@ public abstract class NLGElement {
 	 */
 	public void setFeature(String featureName, float featureValue) {
 		if (featureName != null) {
+			prepareFeatureUpdate();
 			this.features.put(featureName, new Float(featureValue));
 		}
 	}
@@ -181,6 +186,7 @@ public abstract class NLGElement {
 	 */
 	public void setFeature(String featureName, double featureValue) {
 		if (featureName != null) {
+			prepareFeatureUpdate();
 			this.features.put(featureName, new Double(featureValue));
 		}
 	}
@@ -481,6 +487,7 @@ public abstract class NLGElement {
 	 * @return a <code>Map</code> of <code>String</code>, <code>Object</code>.
 	 */
 	public Map<String, Object> getAllFeatures() {
+		prepareFeatureUpdate();
 		return this.features;
 	}
 
@@ -504,6 +511,7 @@ public abstract class NLGElement {
 	 *            the name of the feature to be removed.
 	 */
 	public void removeFeature(String featureName) {
+		prepareFeatureUpdate();
 		this.features.remove(featureName);
 	}
 
@@ -511,9 +519,19 @@ public abstract class NLGElement {
 	 * Deletes all the features in the map.
 	 */
 	public void clearAllFeatures() {
+		prepareFeatureUpdate();
 		this.features.clear();
 	}
 
+	/**
+	 * Called before the feature map is changed, or handed out so that it may
+	 * be changed. Does nothing here; elements which share their feature map
+	 * with other elements override this to take a private copy first.
+	 */
+	protected void prepareFeatureUpdate() {
+		// default method does nothing
+	}
+
 	/**
 	 * Sets the parent element of this element.
 	 * 
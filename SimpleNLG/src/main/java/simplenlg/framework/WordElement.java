@@ -65,6 +65,14 @@ public class WordElement extends NLGElement {
 			this.forms = new HashMap<String, String>();
 		}
 
+		/*
+		 * copy an inflection set
+		 */
+		InflectionSet(InflectionSet other) {
+			this.infl = other.infl;
+			this.forms = new HashMap<String, String>(other.forms);
+		}
+
 		/*
 		 * set an inflectional form
 		 * 
@@ -92,10 +100,18 @@ public class WordElement extends NLGElement {
 
 	String id; // id in lexicon (may be null);
 
+	// an id which is a UUID is stored in these instead, see CompactUUID
+	long idHigh;
+	long idLow;
+
 	Map<Inflection, InflectionSet> inflVars; // the inflectional variants
 
 	Inflection defaultInfl; // the default inflectional variant
 
+	// true if features and inflVars may be shared with another WordElement,
+	// in which case they are copied before they are changed
+	boolean sharedFeatures;
+
 	// LexicalCategory category; // type of word
 
 	/**********************************************************/
@@ -147,12 +163,16 @@ public class WordElement extends NLGElement {
 		super();
 		this.baseForm = baseForm;
 		setCategory(category);
-		this.id = id;
+		setId(id);
 		this.inflVars = new HashMap<Inflection, InflectionSet>();
 	}
 	
 	/**
-	 * creates a duplicate WordElement from an existing WordElement
+	 * creates a duplicate WordElement from an existing WordElement. The copy
+	 * is cheap: the two words share their features and inflectional variants
+	 * until one of them is changed, at which point the changed word takes a
+	 * private copy (copy-on-write). This is how lexicons hand out their
+	 * entries without copying them on every lookup.
 	 * 
 	 * @param currentWord
 	 *            - An existing WordElement
@@ -161,10 +181,26 @@ public class WordElement extends NLGElement {
 		super();
 		this.baseForm = currentWord.getBaseForm();
 		setCategory(currentWord.getCategory());
-		this.id = currentWord.getId();
-		this.inflVars = currentWord.getInflectionalVariants();
+		this.id = currentWord.id;
+		this.idHigh = currentWord.idHigh;
+		this.idLow = currentWord.idLow;
 		this.defaultInfl = (Inflection) currentWord.getDefaultInflectionalVariant();
-		setFeatures(currentWord);
+		this.features = currentWord.features;
+		this.inflVars = currentWord.inflVars;
+		this.sharedFeatures = true;
+		// lexicon entries are marked shared once, when they are indexed, so
+		// copying them does not write to them
+		if (!currentWord.sharedFeatures)
+			currentWord.sharedFeatures = true;
+	}
+
+	/**
+	 * mark the word's features and inflectional variants as shared, so they
+	 * are copied before the word changes them. Lexicons do this to each entry
+	 * once, when it is indexed, before handing out copies of it
+	 */
+	public void setShared() {
+		this.sharedFeatures = true;
 	}
 	
 	
@@ -185,9 +221,34 @@ public class WordElement extends NLGElement {
 	 * @return the id
 	 */
 	public String getId() {
+		if (this.id == null && hasCompactId())
+			return CompactUUID.toString(this.idHigh, this.idLow);
 		return this.id;
 	}
 
+	/**
+	 * @return <code>true</code> if the id is a UUID, stored as
+	 *         {@link #getIdHigh()} and {@link #getIdLow()} rather than as a
+	 *         string
+	 */
+	public boolean hasCompactId() {
+		return this.idHigh != 0 || this.idLow != 0;
+	}
+
+	/**
+	 * @return the most significant bits of a UUID id, or 0
+	 */
+	public long getIdHigh() {
+		return this.idHigh;
+	}
+
+	/**
+	 * @return the least significant bits of a UUID id, or 0
+	 */
+	public long getIdLow() {
+		return this.idLow;
+	}
+
 	/**
 	 * @param baseForm
 	 *            the baseForm to set
@@ -201,7 +262,15 @@ public class WordElement extends NLGElement {
 	 *            the id to set
 	 */
 	public void setId(String id) {
-		this.id = id;
+		if (CompactUUID.isUUID(id)) {
+			this.id = null;
+			this.idHigh = CompactUUID.high(id);
+			this.idLow = CompactUUID.low(id);
+		} else {
+			this.id = id;
+			this.idHigh = 0;
+			this.idLow = 0;
+		}
 	}
 
 	/**
@@ -223,6 +292,7 @@ public class WordElement extends NLGElement {
 	 *            The variant
 	 */
 	public void setDefaultInflectionalVariant(Inflection variant) {
+		prepareFeatureUpdate();
 		setFeature(LexicalFeature.DEFAULT_INFL, variant);
 		this.defaultInfl = variant;
 
@@ -248,11 +318,14 @@ public class WordElement extends NLGElement {
 	}
 
 	/**
-	 * Convenience method to get all the inflectional forms of the word.
+	 * Convenience method to get all the inflectional forms of the word. If
+	 * they are shared with another word (such as a lexicon entry), the word
+	 * takes its own copy first, so changes to the map only affect this word.
 	 * 
 	 * @return the HashMap of inflectional variants
 	 */
 	 public Map<Inflection, InflectionSet> getInflectionalVariants() {
+		 prepareFeatureUpdate();
 		 return this.inflVars;
 	 }
 
@@ -318,6 +391,7 @@ public class WordElement extends NLGElement {
 	 */
 	public void addInflectionalVariant(Inflection infl, String lexicalFeature,
 			String form) {
+		prepareFeatureUpdate();
 		if (this.inflVars.containsKey(infl)) {
 			this.inflVars.get(infl).addForm(lexicalFeature, form);
 		} else {
@@ -334,6 +408,7 @@ public class WordElement extends NLGElement {
 	 *            the variant
 	 */
 	public void addInflectionalVariant(Inflection infl) {
+		prepareFeatureUpdate();
 		this.inflVars.put(infl, new InflectionSet(infl));
 	}
 
@@ -362,6 +437,25 @@ public class WordElement extends NLGElement {
 		}
 	}
 
+	/**
+	 * take private copies of the features and inflectional variants if they
+	 * are shared with another WordElement
+	 */
+	@Override
+	protected void prepareFeatureUpdate() {
+		if (this.sharedFeatures) {
+			this.features = new HashMap<String, Object>(this.features);
+
+			Map<Inflection, InflectionSet> copy = new HashMap<Inflection, InflectionSet>();
+			for (Map.Entry<Inflection, InflectionSet> entry : this.inflVars
+					.entrySet())
+				copy.put(entry.getKey(), new InflectionSet(entry.getValue()));
+			this.inflVars = copy;
+
+			this.sharedFeatures = false;
+		}
+	}
+
 	/**********************************************************/
 	// other methods
 	/**********************************************************/
@@ -445,7 +539,8 @@ public class WordElement extends NLGElement {
 
 			return (this.baseForm == we.baseForm || this.baseForm
 					.equals(we.baseForm))
-					&& (this.id == we.id || this.id.equals(we.id))
+					&& (this.id == null ? we.id == null : this.id.equals(we.id))
+					&& this.idHigh == we.idHigh && this.idLow == we.idLow
 					&& we.features.equals(this.features);
 		}
 
@@ -1,23 +1,36 @@
 package simplenlg.lexicon;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import simplenlg.features.Inflection;
 import simplenlg.features.LexicalFeature;
@@ -34,14 +47,69 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 
 	// lexicon
 	private Set<WordElement> words; // set of words
-	private Map<String, WordElement> indexByID; // map from ID to word
-	private Map<String, List<WordElement>> indexByBase; // map from base to set
-	// of words with this
-	// baseform
-	private Map<String, List<WordElement>> indexByVariant; // map from variants
+	private IDIndex<WordElement> indexByID; // map from ID to word
+
+	// indices from base forms and from variants to words
+	private volatile Indices indices;
+
+	// map from normalised forms to the base forms and variants which have
+	// them, see buildNormalisedIndex()
+	private volatile Map<String, String[]> normalisedIndex = null;
+
+	// combining marks, which are left after decomposing accented letters
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
 
-	// to set of words
-	// with this variant
+	// shares strings which occur in many words
+	private StringInterner interner = new StringInterner();
+
+	// lazy loading, see LoadMode.LAZY
+	private boolean lazy = false;
+	private XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private byte[] source; // contents of the lexicon file
+	private String sourceEncoding; // encoding of the lexicon file
+	private WordRecordScanner records; // where each word is in the file
+	private byte[] recordCategory; // category of each word
+	private AtomicReferenceArray<WordElement> materialised; // words built so far
+	private Map<String, int[]> lazyIndexByBase; // map from base to records
+	private Map<String, int[]> lazyIndexByVariant; // map from variant to records
+	private IDIndex<Integer> lazyIndexByID; // map from ID to record
+
+	/**
+	 * How the words in the lexicon file are loaded
+	 */
+	public enum LoadMode {
+
+		/** build every word when the lexicon is loaded */
+		EAGER,
+		/**
+		 * only keep an index from base forms, variants and IDs to the position
+		 * of each word in the file; build a word the first time it is looked
+		 * up. Memory then tracks the words actually used, not the size of the
+		 * lexicon
+		 */
+		LAZY,
+		/**
+		 * build every word when the lexicon is loaded, splitting the file into
+		 * chunks of words which are built on all available processors. The
+		 * result is the same as EAGER
+		 */
+		PARALLEL
+	}
+
+	// number of chunks per processor in a parallel load, so that a slow chunk
+	// does not hold up the whole load
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/* the words of a chunk read in a parallel load, and their variants */
+	private static final class LoadedChunk {
+		final List<WordElement> words;
+		final List<Set<String>> variants;
+
+		LoadedChunk(int size) {
+			words = new ArrayList<WordElement>(size);
+			variants = new ArrayList<Set<String>>(size);
+		}
+	}
 
 	/**********************************************************************/
 	// constructors
@@ -55,7 +123,7 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 	public AbstractXMLLexicon(String filename) {
 		super();
 		File file = new File(filename);
-		createLexicon(file.toURI());
+		createLexicon(file.toURI(), LoadMode.EAGER);
 	}
 
 	/**
@@ -65,7 +133,7 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 	 */
 	public AbstractXMLLexicon(File file) {
 		super();
-		createLexicon(file.toURI());
+		createLexicon(file.toURI(), LoadMode.EAGER);
 	}
 
 	/**
@@ -74,19 +142,44 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 	 * @param lexiconURI
 	 */
 	public AbstractXMLLexicon(URI lexiconURI) {
+		this(lexiconURI, LoadMode.EAGER);
+	}
+
+	/**
+	 * Load an XML Lexicon from a URI
+	 * 
+	 * @param lexiconURI
+	 * @param mode
+	 *            - whether words are built at load time or on first lookup
+	 */
+	public AbstractXMLLexicon(URI lexiconURI, LoadMode mode) {
 		super();
-		createLexicon(lexiconURI);
+		createLexicon(lexiconURI, mode);
 	}
 
 	public AbstractXMLLexicon(String lexicon, String path) {
+		this(lexicon, path, LoadMode.EAGER);
+	}
+
+	/**
+	 * Load an XML Lexicon from the classpath
+	 * 
+	 * @param lexicon
+	 *            - name of the lexicon resource
+	 * @param path
+	 *            - path of the lexicon, if the resource is not found
+	 * @param mode
+	 *            - whether words are built at load time or on first lookup
+	 */
+	public AbstractXMLLexicon(String lexicon, String path, LoadMode mode) {
 		try {
 			
 			URL defaultLexicon = this.getClass().getClassLoader().getResource(lexicon);
 			
 			if(null != defaultLexicon) {
-				createLexicon(defaultLexicon.toURI());
+				createLexicon(defaultLexicon.toURI(), mode);
 			} else {
-				createLexicon(this.getClass().getResource(path).toURI());
+				createLexicon(this.getClass().getResource(path).toURI(), mode);
 			}
 			
 		} catch (URISyntaxException ex) {
@@ -94,115 +187,575 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 		}
 	}
 	
+	/**
+	 * The base form and variant indices. Words are indexed into the maps;
+	 * {@link AbstractXMLLexicon#compactIndices()} and
+	 * {@link AbstractXMLLexicon#buildTrie()} move them into compact indices or
+	 * a trie and start new maps. The whole set is replaced at once, so a
+	 * lookup sees either the old indices or the new ones, never a mix
+	 */
+	private static final class Indices {
+		// maps from base forms and from variants to the words which have them
+		final Map<String, List<WordElement>> byBase;
+		final Map<String, List<WordElement>> byVariant;
+
+		// read-only copies of earlier words, see compactIndices(); may be null
+		final CompactIndex compactByBase;
+		final CompactIndex compactByVariant;
+
+		// trie over earlier base forms and variants, see buildTrie(); may be
+		// null
+		final WordTrie trie;
+
+		Indices() {
+			this(new HashMap<String, List<WordElement>>(),
+					new HashMap<String, List<WordElement>>(), null, null, null);
+		}
+
+		Indices(Map<String, List<WordElement>> byBase,
+				Map<String, List<WordElement>> byVariant,
+				CompactIndex compactByBase, CompactIndex compactByVariant,
+				WordTrie trie) {
+			this.byBase = byBase;
+			this.byVariant = byVariant;
+			this.compactByBase = compactByBase;
+			this.compactByVariant = compactByVariant;
+			this.trie = trie;
+		}
+
+		/**
+		 * @param key
+		 * @param variant
+		 *            - <code>true</code> for variants, else base forms
+		 * @return words for the key in the trie, <code>null</code> if there is
+		 *         no trie
+		 */
+		WordElement[] trieWords(String key, boolean variant) {
+			return trie == null ? null : trie.get(key, variant);
+		}
+	}
+
 	public abstract Set<String> getVariants(WordElement word);
 	public abstract String getForm(String base, String suffix);
 	public abstract void addSpecialCases();
 
 	/**
-	 * method to actually load and index the lexicon from a URI
+	 * method to actually load and index the lexicon from a URI. The file is
+	 * streamed with StAX, so words are built and indexed in a single pass
+	 * without holding a DOM of the whole lexicon in memory
 	 * 
 	 * @param uri
+	 * @param mode
 	 */
-	private void createLexicon(URI lexiconURI) {
+	private void createLexicon(URI lexiconURI, LoadMode mode) {
 		// initialise objects
 		words = new HashSet<WordElement>();
-		indexByID = new HashMap<String, WordElement>();
-		indexByBase = new HashMap<String, List<WordElement>>();
-		setIndexByVariant(new HashMap<String, List<WordElement>>());
+		indexByID = new IDIndex<WordElement>();
+		indices = new Indices();
 
+		InputStream in = null;
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory
-					.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			Document doc = builder.parse(lexiconURI.toString());
-
-			if (doc != null) {
-				Element lexRoot = doc.getDocumentElement();
-				NodeList wordNodes = lexRoot.getChildNodes();
-				for (int i = 0; i < wordNodes.getLength(); i++) {
-					Node wordNode = wordNodes.item(i);
-					// ignore things that aren't elements
-					if (wordNode.getNodeType() == Node.ELEMENT_NODE) {
-						WordElement word = convertNodeToWord(wordNode);
-						if (word != null) {
-							words.add(word);
-							IndexWord(word);
+			in = lexiconURI.toURL().openStream();
+			if (mode == LoadMode.LAZY)
+				loadIndex(in);
+			else if (mode == LoadMode.PARALLEL)
+				loadWordsInParallel(in);
+			else
+				loadWords(in);
+		} catch (Exception ex) {
+			System.out.println(ex.toString());
+		} finally {
+			closeQuietly(null, in);
+		}
+
+		// words built later by a lazy lexicon still need the pool
+		if (!lazy)
+			interner.clear();
+
+		addSpecialCases();
+	}
+
+	/**
+	 * build and index every word in a lexicon file
+	 * 
+	 * @param in
+	 *            - the lexicon file
+	 * @throws XMLStreamException
+	 */
+	private void loadWords(InputStream in) throws XMLStreamException {
+		XMLStreamReader reader = null;
+		try {
+			reader = inputFactory.createXMLStreamReader(in);
+
+			// skip to the root (lexicon) element
+			while (reader.hasNext()
+					&& reader.next() != XMLStreamConstants.START_ELEMENT)
+				;
+
+			// each child of the root is a word
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					WordElement word = readWord(reader);
+					if (word != null) {
+						words.add(word);
+						IndexWord(word);
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					// end of root element
+					break;
+				}
+			}
+		} finally {
+			closeQuietly(reader, null);
+		}
+	}
+
+	/**
+	 * parallel loading: build and index every word in a lexicon file, building
+	 * chunks of words on separate threads. Chunks are indexed in file order, so
+	 * the indices (and any duplicate ID messages) are the same as for a serial
+	 * load
+	 * 
+	 * @param in
+	 *            - the lexicon file
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private void loadWordsInParallel(InputStream in) throws IOException,
+			XMLStreamException {
+		final byte[] contents = readFully(in);
+		final String encoding = getEncoding(contents);
+		final WordRecordScanner scanner = new WordRecordScanner(contents);
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (threads < 2 || scanner.size() < 2 || !isScannable(encoding)) {
+			loadWords(new ByteArrayInputStream(contents));
+			return;
+		}
+
+		int chunks = Math.min(scanner.size(), threads * CHUNKS_PER_THREAD);
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					public Thread newThread(Runnable task) {
+						Thread thread = new Thread(task, "lexicon-loader");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		List<Future<LoadedChunk>> results = new ArrayList<Future<LoadedChunk>>();
+		try {
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				final int first = (int) ((long) scanner.size() * chunk / chunks);
+				final int last = (int) ((long) scanner.size() * (chunk + 1) / chunks);
+				results.add(executor.submit(new Callable<LoadedChunk>() {
+					public LoadedChunk call() throws XMLStreamException {
+						XMLInputFactory factory = XMLInputFactory.newInstance();
+						LoadedChunk loaded = new LoadedChunk(last - first);
+						for (int record = first; record < last; record++) {
+							WordElement word = readRecord(factory, contents,
+									scanner.start(record), scanner.end(record),
+									encoding);
+							if (word != null) {
+								loaded.words.add(word);
+								// variants are the costly part for some
+								// languages, so they are worked out here too
+								loaded.variants.add(getVariants(word));
+							}
 						}
+						return loaded;
 					}
+				}));
+			}
+
+			// index in file order, as a serial load does
+			for (Future<LoadedChunk> result : results) {
+				LoadedChunk loaded = result.get();
+				for (int i = 0; i < loaded.words.size(); i++) {
+					WordElement word = loaded.words.get(i);
+					words.add(word);
+					IndexWord(word, loaded.variants.get(i));
 				}
 			}
-		} catch (Exception ex) {
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new XMLStreamException("lexicon load interrupted");
+		} catch (ExecutionException ex) {
+			// a word could not be read on its own, so read the file as a whole
+			System.out.println(ex.getCause().toString());
+			words.clear();
+			indexByID.clear();
+			indices = new Indices();
+			loadWords(new ByteArrayInputStream(contents));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param contents
+	 *            - bytes of a lexicon file
+	 * @return encoding of the file
+	 * @throws XMLStreamException
+	 */
+	private String getEncoding(byte[] contents) throws XMLStreamException {
+		XMLStreamReader reader = null;
+		try {
+			synchronized (inputFactory) {
+				reader = inputFactory
+						.createXMLStreamReader(new ByteArrayInputStream(
+								contents));
+			}
+			while (reader.hasNext()
+					&& reader.next() != XMLStreamConstants.START_ELEMENT)
+				;
+			return reader.getEncoding() == null ? "UTF-8" : reader
+					.getEncoding();
+		} finally {
+			closeQuietly(reader, null);
+		}
+	}
+
+	/**
+	 * @param encoding
+	 * @return <code>true</code> if words can be found in a file in this
+	 *         encoding by {@link WordRecordScanner}
+	 */
+	private static boolean isScannable(String encoding) {
+		String name = encoding.toUpperCase();
+		return !name.startsWith("UTF-16") && !name.startsWith("UTF-32");
+	}
+
+	/**
+	 * lazy loading: index where each word is in the lexicon file, by base
+	 * form, variant and ID. Each word has to be read once to work out its
+	 * variants, but is then thrown away; only the file contents and the index
+	 * are kept
+	 * 
+	 * @param in
+	 *            - the lexicon file
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private void loadIndex(InputStream in) throws IOException,
+			XMLStreamException {
+		source = readFully(in);
+		records = new WordRecordScanner(source);
+		recordCategory = new byte[records.size()];
+		lazyIndexByBase = new HashMap<String, int[]>();
+		lazyIndexByVariant = new HashMap<String, int[]>();
+		lazyIndexByID = new IDIndex<Integer>();
+
+		XMLStreamReader reader = null;
+		int record = 0;
+		try {
+			reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(
+					source));
+
+			// skip to the root (lexicon) element
+			while (reader.hasNext()
+					&& reader.next() != XMLStreamConstants.START_ELEMENT)
+				;
+			sourceEncoding = reader.getEncoding() == null ? "UTF-8" : reader
+					.getEncoding();
+
+			// each child of the root is a word; the n-th word read here is the
+			// n-th word found by the scanner
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					WordElement word = readWord(reader);
+					if (word != null) {
+						if (record < records.size())
+							indexRecord(word, record);
+						record++;
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					// end of root element
+					break;
+				}
+			}
+		} finally {
+			closeQuietly(reader, null);
+		}
+
+		if (record != records.size() || !isScannable(sourceEncoding)) {
+			// cannot find the words in this file, so build them all now
+			System.out.println("Lexicon error: cannot load lexicon lazily, loading all words");
+			byte[] contents = source;
+			clearLazyIndex();
+			loadWords(new ByteArrayInputStream(contents));
+			return;
+		}
+
+		materialised = new AtomicReferenceArray<WordElement>(records.size());
+		lazy = true;
+	}
+
+	/**
+	 * lazy loading: add a word to the lazy indices
+	 * 
+	 * @param word
+	 * @param record
+	 *            - position of the word in the file
+	 */
+	private void indexRecord(WordElement word, int record) {
+		recordCategory[record] = (byte) ((LexicalCategory) word.getCategory())
+				.ordinal();
+
+		String base = word.getBaseForm();
+		if (base != null)
+			addRecord(lazyIndexByBase, base, record);
+
+		if (word.hasCompactId()) {
+			// UUIDs are indexed without building their strings
+			if (lazyIndexByID.put(word.getIdHigh(), word.getIdLow(), record) != null)
+				System.out.println("Lexicon error: ID " + word.getId()
+						+ " occurs more than once");
+		} else if (word.getId() != null) {
+			String id = word.getId();
+			if (lazyIndexByID.containsKey(id))
+				System.out.println("Lexicon error: ID " + id
+						+ " occurs more than once");
+			lazyIndexByID.put(id, record);
+		}
+
+		for (String variant : getVariants(word))
+			addRecord(lazyIndexByVariant, variant, record);
+	}
+
+	/**
+	 * lazy loading: add a record to a lazy index
+	 * 
+	 * @param index
+	 * @param key
+	 * @param record
+	 */
+	private static void addRecord(Map<String, int[]> index, String key,
+			int record) {
+		int[] old = index.get(key);
+		if (old == null) {
+			index.put(key, new int[] { record });
+		} else if (old[old.length - 1] != record) {
+			int[] records = new int[old.length + 1];
+			System.arraycopy(old, 0, records, 0, old.length);
+			records[old.length] = record;
+			index.put(key, records);
+		}
+	}
+
+	/**
+	 * lazy loading: forget the lazy indices
+	 */
+	private void clearLazyIndex() {
+		lazy = false;
+		source = null;
+		records = null;
+		recordCategory = null;
+		materialised = null;
+		lazyIndexByBase = null;
+		lazyIndexByVariant = null;
+		lazyIndexByID = null;
+	}
+
+	/**
+	 * lazy loading: get the word at a position in the file, building it if
+	 * this is the first time it has been asked for
+	 * 
+	 * @param record
+	 * @return the word, or <code>null</code> if it cannot be read
+	 */
+	private WordElement getRecord(int record) {
+		WordElement word = materialised.get(record);
+		if (word == null) {
+			word = readRecord(record);
+			if (word != null)
+				word.setShared();
+			// if another thread built the word first, use its copy
+			if (word != null && !materialised.compareAndSet(record, null, word))
+				word = materialised.get(record);
+		}
+		return word;
+	}
+
+	/**
+	 * lazy loading: build the word at a position in the file
+	 * 
+	 * @param record
+	 * @return the word, or <code>null</code> if it cannot be read
+	 */
+	private WordElement readRecord(int record) {
+		try {
+			return readRecord(inputFactory, source, records.start(record),
+					records.end(record), sourceEncoding);
+		} catch (XMLStreamException ex) {
 			System.out.println(ex.toString());
+			return null;
 		}
+	}
 
-		addSpecialCases();
+	/**
+	 * build the word in a slice of a lexicon file
+	 * 
+	 * @param factory
+	 *            - factory for the XML reader
+	 * @param contents
+	 *            - bytes of the lexicon file
+	 * @param start
+	 *            - start of the word element
+	 * @param end
+	 *            - end of the word element
+	 * @param encoding
+	 *            - encoding of the lexicon file
+	 * @return the word, or <code>null</code> if the element is not a word
+	 * @throws XMLStreamException
+	 */
+	private WordElement readRecord(XMLInputFactory factory, byte[] contents,
+			int start, int end, String encoding) throws XMLStreamException {
+		XMLStreamReader reader = null;
+		try {
+			// factories are not guaranteed to be thread-safe
+			synchronized (factory) {
+				reader = factory.createXMLStreamReader(
+						new ByteArrayInputStream(contents, start, end - start),
+						encoding);
+			}
+			reader.nextTag();
+			return readWord(reader);
+		} finally {
+			closeQuietly(reader, null);
+		}
 	}
 
 	/**
-	 * create a simplenlg WordElement from a Word node in a lexicon XML file
+	 * read the whole of a stream
 	 * 
-	 * @param wordNode
-	 * @return
-	 * @throws XPathUtilException
+	 * @param in
+	 * @return contents of the stream
+	 * @throws IOException
 	 */
-	private WordElement convertNodeToWord(Node wordNode) {
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[65536];
+		int n;
+		while ((n = in.read(buffer)) > 0)
+			out.write(buffer, 0, n);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Feature names, feature values and base forms read from the lexicon file
+	 * are shared between words, as many of them repeat
+	 * 
+	 * @return estimate of the heap saved by sharing strings, in bytes
+	 */
+	public long getInternedBytesSaved() {
+		return interner.getBytesSaved();
+	}
+
+	/**
+	 * @return number of strings read from the lexicon file which were replaced
+	 *         by an equal shared string
+	 */
+	public long getInternedStringCount() {
+		return interner.getDuplicates();
+	}
+
+	/**
+	 * @return <code>true</code> if words are built the first time they are
+	 *         looked up, see {@link LoadMode#LAZY}
+	 */
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * create a simplenlg WordElement from a Word element in a lexicon XML file.
+	 * The reader must be positioned on the start tag of the element; on return
+	 * it is positioned on the matching end tag
+	 * 
+	 * @param reader
+	 * @return word, or <code>null</code> if the element is not a word
+	 * @throws XMLStreamException
+	 */
+	private WordElement readWord(XMLStreamReader reader)
+			throws XMLStreamException {
 		// if this isn't a Word node, ignore it
-		if (!wordNode.getNodeName().equalsIgnoreCase(XML_WORD))
+		if (!reader.getLocalName().equalsIgnoreCase(XML_WORD)) {
+			skipElement(reader);
 			return null;
-
-		// // if there is no base, flag an error and return null
-		// String base = XPathUtil.extractValue(wordNode, Constants.XML_BASE);
-		// if (base == null) {
-		// System.out.println("Error in loading XML lexicon: Word with no base");
-		// return null;
-		// }
+		}
 
 		// create word
 		WordElement word = new WordElement();
 		List<Inflection> inflections = new ArrayList<Inflection>();
 
 		// now copy features
-		NodeList nodes = wordNode.getChildNodes();
-		for (int i = 0; i < nodes.getLength(); i++) {
-			Node featureNode = nodes.item(i);
-
-			if (featureNode.getNodeType() == Node.ELEMENT_NODE) {
-				String feature = featureNode.getNodeName().trim();
-				String value = featureNode.getTextContent();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			String feature = reader.getLocalName().trim();
+			String value = reader.getElementText();
 
-				if (value != null)
-					value = value.trim();
+			if (value != null)
+				value = value.trim();
 
-				if (feature == null) {
-					System.err.println("Error in XML lexicon node for "
-							+ word.toString());
-					break;
-				}
+			addFeature(word, inflections, feature, value);
+		}
 
-				if (feature.equalsIgnoreCase(XML_BASE)) {
-					word.setBaseForm(value);
-				} else if (feature.equalsIgnoreCase(XML_CATEGORY))
-					word.setCategory(LexicalCategory.valueOf(value
-							.toUpperCase()));
-				else if (feature.equalsIgnoreCase(XML_ID))
-					word.setId(value);
-
-				else if (value == null || value.equals("")) {
-					// if this is an infl code, add it to inflections
-					Inflection infl = Inflection.getInflCode(feature);
-
-					if (infl != null) {
-						inflections.add(infl);
-					} else {
-						// otherwise assume it's a boolean feature
-						word.setFeature(feature, true);
-					}
-				} else
-					word.setFeature(feature, value);
-			}
+		return finishWord(word, inflections);
+	}
 
+	/**
+	 * set a feature read from the lexicon XML file on a word. Base form,
+	 * category and ID are handled specially; empty elements are either
+	 * inflection codes or boolean features
+	 * 
+	 * @param word
+	 * @param inflections
+	 *            - inflection codes found so far for this word
+	 * @param feature
+	 *            - element name
+	 * @param value
+	 *            - trimmed element text
+	 */
+	private void addFeature(WordElement word, List<Inflection> inflections,
+			String feature, String value) {
+		feature = interner.intern(feature);
+		if (feature.equalsIgnoreCase(XML_ID)) {
+			// IDs are unique, so there is nothing to share
+			word.setId(value);
+			return;
 		}
+		value = interner.intern(value);
+
+		if (feature.equalsIgnoreCase(XML_BASE)) {
+			word.setBaseForm(value);
+		} else if (feature.equalsIgnoreCase(XML_CATEGORY))
+			word.setCategory(LexicalCategory.valueOf(value.toUpperCase()));
+
+		else if (value == null || value.equals("")) {
+			// if this is an infl code, add it to inflections
+			Inflection infl = Inflection.getInflCode(feature);
+
+			if (infl != null) {
+				inflections.add(infl);
+			} else {
+				// otherwise assume it's a boolean feature
+				word.setFeature(feature, true);
+			}
+		} else
+			word.setFeature(feature, value);
+	}
 
+	/**
+	 * set up the inflectional variants of a word once all its features have
+	 * been read
+	 * 
+	 * @param word
+	 * @param inflections
+	 *            - inflection codes found for this word
+	 * @return the word
+	 */
+	private WordElement finishWord(WordElement word, List<Inflection> inflections) {
 		// if no infl specified, assume regular
 		if (inflections.isEmpty()) {
 			inflections.add(Inflection.REGULAR);
@@ -224,22 +777,78 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 		return word;
 	}
 
+	/**
+	 * skip the element the reader is positioned on, including its children
+	 * 
+	 * @param reader
+	 * @throws XMLStreamException
+	 */
+	private static void skipElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	/**
+	 * close a reader and its underlying stream, ignoring errors
+	 * 
+	 * @param reader
+	 * @param in
+	 */
+	private static void closeQuietly(XMLStreamReader reader, InputStream in) {
+		try {
+			if (reader != null)
+				reader.close();
+			if (in != null)
+				in.close();
+		} catch (Exception ex) {
+			// nothing useful to do here
+		}
+	}
+
 	/**
 	 * add word to internal indices
 	 * 
 	 * @param word
 	 */
 	private void IndexWord(WordElement word) {
+		IndexWord(word, getVariants(word));
+	}
+
+	/**
+	 * add word to internal indices
+	 * 
+	 * @param word
+	 * @param variants
+	 *            - the word's variants, see {@link #getVariants(WordElement)}
+	 */
+	private void IndexWord(WordElement word, Set<String> variants) {
+		// words are handed out as copies which share their features
+		word.setShared();
+
+		Indices current = indices;
+
 		// first index by base form
 		String base = word.getBaseForm();
 		// shouldn't really need is, as all words have base forms
 		if (base != null) {
-			updateIndex(word, base, indexByBase);
+			updateIndex(word, base, current.byBase);
 		}
 
-		// now index by ID, which should be unique (if present)
+		// now index by ID, which should be unique (if present). UUIDs are
+		// indexed without building their strings
 		String id = word.getId();
-		if (id != null) {
+		if (word.hasCompactId()) {
+			if (indexByID.put(word.getIdHigh(), word.getIdLow(), word) != null)
+				System.out.println("Lexicon error: ID " + id
+						+ " occurs more than once");
+		} else if (id != null) {
 			if (indexByID.containsKey(id))
 				System.out.println("Lexicon error: ID " + id
 						+ " occurs more than once");
@@ -247,8 +856,8 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 		}
 
 		// now index by variant
-		for (String variant : getVariants(word)) {
-			updateIndex(word, variant, getIndexByVariant());
+		for (String variant : variants) {
+			updateIndex(word, variant, current.byVariant);
 		}
 
 		// done
@@ -263,9 +872,11 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 	 */
 	public void updateIndex(WordElement word, String base,
 			Map<String, List<WordElement>> index) {
+		checkWritable();
 		if (!index.containsKey(base))
 			index.put(base, new ArrayList<WordElement>());
 		index.get(base).add(word);
+		clearLookupCache();
 	}
 
 	/******************************************************************************************/
@@ -280,21 +891,73 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 	 */
 	@Override
 	public List<WordElement> getWords(String baseForm, LexicalCategory category) {
-		return getWordsFromIndex(baseForm, category, indexByBase);
+		Indices current = indices;
+		return getWordsFromIndex(baseForm, category, current.byBase,
+				current.trieWords(baseForm, false), current.compactByBase,
+				lazyIndexByBase);
 	}
 
 	/**
-	 * get matching keys from an index map
+	 * get matching keys from an index map. The lexicon's own entries are never
+	 * handed out; callers get copy-on-write views of them, which share the
+	 * entry's features until the caller changes something
 	 * 
 	 * @param indexKey
 	 * @param category
 	 * @param indexMap
+	 * @param trieWords
+	 *            - words for the key in the trie, <code>null</code> if there is
+	 *            no trie
+	 * @param compactIndex
+	 *            - matching compact index, <code>null</code> if not compacted
+	 * @param lazyIndexMap
+	 *            - matching lazy index, <code>null</code> if not lazy
 	 * @return
 	 */
 	private List<WordElement> getWordsFromIndex(String indexKey,
-			LexicalCategory category, Map<String, List<WordElement>> indexMap) {
+			LexicalCategory category, Map<String, List<WordElement>> indexMap,
+			WordElement[] trieWords, CompactIndex compactIndex,
+			Map<String, int[]> lazyIndexMap) {
 		List<WordElement> result = new ArrayList<WordElement>();
 
+		// words in the trie
+		if (trieWords != null) {
+			for (WordElement word : trieWords) {
+				if (category == LexicalCategory.ANY
+						|| word.getCategory() == category)
+					result.add(new WordElement(word));
+			}
+		}
+
+		// words in the compact index
+		if (compactIndex != null) {
+			int key = compactIndex.find(indexKey);
+			if (key >= 0) {
+				for (int pos = compactIndex.start(key); pos < compactIndex
+						.end(key); pos++) {
+					WordElement word = compactIndex.get(pos);
+					if (category == LexicalCategory.ANY
+							|| word.getCategory() == category)
+						result.add(new WordElement(word));
+				}
+			}
+		}
+
+		// words which have not been built yet
+		if (lazy) {
+			int[] keyRecords = lazyIndexMap.get(indexKey);
+			if (keyRecords != null) {
+				for (int record : keyRecords) {
+					if (category == LexicalCategory.ANY
+							|| recordCategory[record] == category.ordinal()) {
+						WordElement word = getRecord(record);
+						if (word != null)
+							result.add(new WordElement(word));
+					}
+				}
+			}
+		}
+
 		// case 1: unknown, return empty list
 		if (!indexMap.containsKey(indexKey)) {
 			return result;
@@ -318,6 +981,211 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 		return result;
 	}
 
+	/**
+	 * Picks a word straight from the indices, rather than from lists of copies
+	 * of all matches
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#resolveWord(java.lang.String,
+	 *      simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public WordElement resolveWord(String baseForm, LexicalCategory category) {
+		Indices current = indices;
+		WordElement word = selectFromIndex(baseForm, category, current.byBase,
+				current.trieWords(baseForm, false), current.compactByBase,
+				lazyIndexByBase);
+		if (word == null)
+			word = selectFromIndex(baseForm, category, current.byVariant,
+					current.trieWords(baseForm, true),
+					current.compactByVariant, lazyIndexByVariant);
+		if (word != null) {
+			// as in Lexicon.selectMatchingWord, a word which only matches
+			// ignoring case is not used
+			if (!word.getBaseForm().equals(baseForm)
+					&& word.getBaseForm().equalsIgnoreCase(baseForm))
+				return createWord(baseForm, LexicalCategory.ANY);
+			return new WordElement(word);
+		}
+
+		word = indexByID.get(baseForm);
+		if (word == null && lazy) {
+			Integer record = lazyIndexByID.get(baseForm);
+			if (record != null)
+				word = getRecord(record);
+		}
+		if (word == null)
+			word = selectFromNormalisedIndex(baseForm, category);
+		return word == null ? null : new WordElement(word);
+	}
+
+	/**
+	 * pick a word for a form which is not in the lexicon as it stands, but
+	 * whose normalised form (see {@link #normalise(String)}) is. Of the base
+	 * forms and variants with that normalised form, the one which is the same
+	 * as the form once accents are composed is preferred, then one which only
+	 * differs in case, then the first
+	 * 
+	 * @param form
+	 * @param category
+	 * @return the lexicon's own word, or <code>null</code> if there is no
+	 *         normalised index or no matching word
+	 */
+	private WordElement selectFromNormalisedIndex(String form,
+			LexicalCategory category) {
+		Map<String, String[]> currentIndex = normalisedIndex;
+		if (currentIndex == null)
+			return null;
+		String[] keys = currentIndex.get(normalise(form));
+		if (keys == null)
+			return null;
+
+		String composed = Normalizer.normalize(form, Normalizer.Form.NFC);
+		WordElement first = null;
+		WordElement sameLetters = null;
+		for (String key : keys) {
+			WordElement word = selectFromKey(key, category);
+			if (word == null)
+				continue;
+			if (key.equals(composed))
+				return word;
+			if (sameLetters == null && key.equalsIgnoreCase(composed))
+				sameLetters = word;
+			if (first == null)
+				first = word;
+		}
+		return sameLetters != null ? sameLetters : first;
+	}
+
+	/**
+	 * @param key
+	 * @param category
+	 * @return the lexicon's own word for a base form, else a variant, or
+	 *         <code>null</code> if there is none
+	 */
+	private WordElement selectFromKey(String key, LexicalCategory category) {
+		Indices current = indices;
+		WordElement word = selectFromIndex(key, category, current.byBase,
+				current.trieWords(key, false), current.compactByBase,
+				lazyIndexByBase);
+		if (word == null)
+			word = selectFromIndex(key, category, current.byVariant,
+					current.trieWords(key, true), current.compactByVariant,
+					lazyIndexByVariant);
+		return word;
+	}
+
+	/**
+	 * Get the words whose base form or variant has the same normalised form
+	 * (see {@link #normalise(String)}) as the given form. Needs
+	 * {@link #buildNormalisedIndex()}; without it the list is empty
+	 * 
+	 * @param form
+	 * @param category
+	 * @return copies of the matching words, base form matches first
+	 */
+	public List<WordElement> getWordsFromNormalised(String form,
+			LexicalCategory category) {
+		List<WordElement> result = new ArrayList<WordElement>();
+		Map<String, String[]> currentIndex = normalisedIndex;
+		if (currentIndex == null)
+			return result;
+		String[] keys = currentIndex.get(normalise(form));
+		if (keys == null)
+			return result;
+
+		for (String key : keys)
+			result.addAll(getWords(key, category));
+		// a word can have several variants with the same normalised form
+		for (String key : keys)
+			for (WordElement word : getWordsFromVariant(key, category))
+				if (!result.contains(word))
+					result.add(word);
+		return result;
+	}
+
+	/**
+	 * pick a word from the indices for a key, in the same way as
+	 * {@link Lexicon#getWord(String, LexicalCategory)} picks one from the list
+	 * returned by {@link #getWordsFromIndex}: the first word whose base form is
+	 * the key, else the first word
+	 * 
+	 * @param indexKey
+	 * @param category
+	 * @param indexMap
+	 * @param trieWords
+	 * @param compactIndex
+	 * @param lazyIndexMap
+	 * @return the lexicon's own word, or <code>null</code> if there is none
+	 */
+	private WordElement selectFromIndex(String indexKey,
+			LexicalCategory category, Map<String, List<WordElement>> indexMap,
+			WordElement[] trieWords, CompactIndex compactIndex,
+			Map<String, int[]> lazyIndexMap) {
+		WordElement first = null;
+
+		if (trieWords != null) {
+			for (WordElement word : trieWords) {
+				if (category == LexicalCategory.ANY
+						|| word.getCategory() == category) {
+					if (word.getBaseForm().equals(indexKey))
+						return word;
+					if (first == null)
+						first = word;
+				}
+			}
+		}
+
+		if (compactIndex != null) {
+			int key = compactIndex.find(indexKey);
+			if (key >= 0) {
+				for (int pos = compactIndex.start(key); pos < compactIndex
+						.end(key); pos++) {
+					WordElement word = compactIndex.get(pos);
+					if (category == LexicalCategory.ANY
+							|| word.getCategory() == category) {
+						if (word.getBaseForm().equals(indexKey))
+							return word;
+						if (first == null)
+							first = word;
+					}
+				}
+			}
+		}
+
+		if (lazy) {
+			int[] keyRecords = lazyIndexMap.get(indexKey);
+			if (keyRecords != null) {
+				for (int record : keyRecords) {
+					if (category == LexicalCategory.ANY
+							|| recordCategory[record] == category.ordinal()) {
+						WordElement word = getRecord(record);
+						if (word == null)
+							continue;
+						if (word.getBaseForm().equals(indexKey))
+							return word;
+						if (first == null)
+							first = word;
+					}
+				}
+			}
+		}
+
+		List<WordElement> keyWords = indexMap.get(indexKey);
+		if (keyWords != null) {
+			for (WordElement word : keyWords) {
+				if (category == LexicalCategory.ANY
+						|| word.getCategory() == category) {
+					if (word.getBaseForm().equals(indexKey))
+						return word;
+					if (first == null)
+						first = word;
+				}
+			}
+		}
+
+		return first;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -326,9 +1194,14 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 	@Override
 	public List<WordElement> getWordsByID(String id) {
 		List<WordElement> result = new ArrayList<WordElement>();
-		if (indexByID.containsKey(id)) {
-			result.add(new WordElement(indexByID.get(id)));
+		WordElement word = indexByID.get(id);
+		if (word == null && lazy) {
+			Integer record = lazyIndexByID.get(id);
+			if (record != null)
+				word = getRecord(record);
 		}
+		if (word != null)
+			result.add(new WordElement(word));
 		return result;
 	}
 
@@ -341,7 +1214,10 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 	@Override
 	public List<WordElement> getWordsFromVariant(String variant,
 			LexicalCategory category) {
-		return getWordsFromIndex(variant, category, getIndexByVariant());
+		Indices current = indices;
+		return getWordsFromIndex(variant, category, current.byVariant,
+				current.trieWords(variant, true), current.compactByVariant,
+				lazyIndexByVariant);
 	}
 
 	/**
@@ -360,12 +1236,397 @@ public abstract class AbstractXMLLexicon extends Lexicon {
 			return getForm(word.getBaseForm(), suffix);
 	}
 
+	/**
+	 * @return all words loaded from the lexicon file. If the lexicon is lazy,
+	 *         this builds every word which has not been built yet
+	 */
+	public Set<WordElement> getAllWords() {
+		if (lazy) {
+			Set<WordElement> all = new HashSet<WordElement>(words);
+			for (int record = 0; record < records.size(); record++) {
+				WordElement word = getRecord(record);
+				if (word != null)
+					all.add(word);
+			}
+			return all;
+		}
+		return words;
+	}
+
+	/**
+	 * Replace the base form and variant index maps by sorted arrays, which
+	 * take a fraction of the memory and need no allocation to look up a key.
+	 * Lookups use the arrays transparently. Words indexed afterwards (for
+	 * example by {@link #updateIndex}) go into new, initially empty, maps which
+	 * are searched as well; calling this method again folds them into the
+	 * arrays.
+	 * 
+	 * This should be called before the lexicon is shared between threads. Once
+	 * it has been called, {@link #getIndexByBase()} and
+	 * {@link #getIndexByVariant()} only return words indexed since.
+	 */
+	public synchronized void compactIndices() {
+		checkWritable();
+		Indices current = indices;
+		indices = new Indices(new HashMap<String, List<WordElement>>(),
+				new HashMap<String, List<WordElement>>(), new CompactIndex(
+						mergeIndex(current, false)), new CompactIndex(
+						mergeIndex(current, true)), null);
+	}
+
+	/**
+	 * Replace the base form and variant indices by a compressed trie, which
+	 * stores shared prefixes once and also supports
+	 * {@link #getKeysWithPrefix(String, int)} and
+	 * {@link #getKeysWithinDistance(String, int, int)}. Lookups use the trie
+	 * transparently. As with {@link #compactIndices()}, words indexed
+	 * afterwards go into new maps, and are added to the trie (and to prefix
+	 * and distance searches) the next time this method is called. For a lazy
+	 * lexicon, the trie only holds the keys.
+	 * 
+	 * This should be called before the lexicon is shared between threads.
+	 */
+	public synchronized void buildTrie() {
+		checkWritable();
+		Indices current = indices;
+		WordTrie newTrie = new WordTrie();
+		for (Map.Entry<String, List<WordElement>> entry : mergeIndex(current,
+				false).entrySet())
+			newTrie.add(entry.getKey(), false, entry.getValue());
+		for (Map.Entry<String, List<WordElement>> entry : mergeIndex(current,
+				true).entrySet())
+			newTrie.add(entry.getKey(), true, entry.getValue());
+		if (lazy) {
+			List<WordElement> none = Collections.emptyList();
+			for (String key : lazyIndexByBase.keySet())
+				newTrie.add(key, false, none);
+			for (String key : lazyIndexByVariant.keySet())
+				newTrie.add(key, true, none);
+		}
+
+		indices = new Indices(new HashMap<String, List<WordElement>>(),
+				new HashMap<String, List<WordElement>>(), null, null, newTrie);
+	}
+
+	/**
+	 * Build an index from the normalised form (see {@link #normalise(String)})
+	 * of each base form and variant. <code>lookupWord</code> then finds words
+	 * given with a different case, with decomposed accents or without
+	 * accents, such as "Portugus", "portugue\u0301s" or "portugues" for
+	 * "portugus", instead of creating a new word for them. Forms which are in
+	 * the lexicon as given are still found first.
+	 * 
+	 * Words indexed afterwards are added the next time this method is called.
+	 * This should be called before the lexicon is shared between threads.
+	 */
+	public synchronized void buildNormalisedIndex() {
+		checkWritable();
+		Map<String, Set<String>> keysByForm = new HashMap<String, Set<String>>();
+		addNormalisedKeys(keysByForm, getIndexEntries(false).keySet());
+		if (lazy)
+			addNormalisedKeys(keysByForm, lazyIndexByBase.keySet());
+		addNormalisedKeys(keysByForm, getIndexEntries(true).keySet());
+		if (lazy)
+			addNormalisedKeys(keysByForm, lazyIndexByVariant.keySet());
+
+		Map<String, String[]> newIndex = new HashMap<String, String[]>(
+				keysByForm.size() * 4 / 3 + 1);
+		for (Map.Entry<String, Set<String>> entry : keysByForm.entrySet())
+			newIndex.put(entry.getKey(), entry.getValue().toArray(
+					new String[entry.getValue().size()]));
+		normalisedIndex = newIndex;
+		// forms which were missing may now be found
+		clearLookupCache();
+	}
+
+	/**
+	 * @param keysByForm
+	 *            - map from normalised forms to base forms and variants
+	 * @param keys
+	 *            - base forms or variants to add
+	 */
+	private void addNormalisedKeys(Map<String, Set<String>> keysByForm,
+			Set<String> keys) {
+		for (String key : keys) {
+			String form = interner.intern(normalise(key));
+			Set<String> formKeys = keysByForm.get(form);
+			if (formKeys == null) {
+				formKeys = new LinkedHashSet<String>(2);
+				keysByForm.put(form, formKeys);
+			}
+			formKeys.add(key);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if {@link #buildNormalisedIndex()} has been
+	 *         called
+	 */
+	public boolean isNormalised() {
+		return normalisedIndex != null;
+	}
+
+	/**
+	 * Normalise a form for the normalised index: accents are removed (after
+	 * decomposing accented letters, so "" and "c\u0327" both become "c"), and
+	 * letters are put in lower case
+	 * 
+	 * @param form
+	 * @return normalised form
+	 */
+	public static String normalise(String form) {
+		String decomposed = Normalizer.normalize(form, Normalizer.Form.NFD);
+		return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(
+				Locale.ENGLISH);
+	}
+
+	/**
+	 * List the base forms and variants starting with a prefix, for example to
+	 * complete a partly typed word. Needs the trie, see {@link #buildTrie()}
+	 * 
+	 * @param prefix
+	 * @param limit
+	 *            - maximum number of forms to return
+	 * @return matching base forms and variants, in alphabetical order
+	 * @throws IllegalStateException
+	 *             if the trie has not been built, or has been replaced by
+	 *             {@link #compactIndices()}
+	 */
+	public List<String> getKeysWithPrefix(String prefix, int limit) {
+		return getTrie().getKeysWithPrefix(prefix, limit);
+	}
+
+	/**
+	 * List the base forms and variants within an edit distance of a string,
+	 * for example to suggest a word for a misspelling. Needs the trie, see
+	 * {@link #buildTrie()}
+	 * 
+	 * @param form
+	 * @param maxDistance
+	 *            - maximum number of insertions, deletions and substitutions
+	 * @param limit
+	 *            - maximum number of forms to return
+	 * @return matching base forms and variants, closest first
+	 * @throws IllegalStateException
+	 *             if the trie has not been built, or has been replaced by
+	 *             {@link #compactIndices()}
+	 */
+	public List<String> getKeysWithinDistance(String form, int maxDistance,
+			int limit) {
+		return getTrie().getKeysWithinDistance(form, maxDistance, limit);
+	}
+
+	/**
+	 * @return the trie. It is never built here, as that would change a lexicon
+	 *         which may be read-only or in use by other threads
+	 */
+	private WordTrie getTrie() {
+		WordTrie currentTrie = indices.trie;
+		if (currentTrie == null)
+			throw new IllegalStateException(
+					"Lexicon trie has not been built, see buildTrie()");
+		return currentTrie;
+	}
+
+	/**
+	 * @return <code>true</code> if {@link #compactIndices()} or
+	 *         {@link #buildTrie()} has been called
+	 */
+	public boolean isCompact() {
+		Indices current = indices;
+		return current.compactByBase != null || current.trie != null;
+	}
+
+	/**
+	 * @param current
+	 *            - the indices to merge
+	 * @param variant
+	 *            - <code>true</code> for the variant indices
+	 * @return an index map holding the words of the trie (if any), the compact
+	 *         index and the index map
+	 */
+	private static Map<String, List<WordElement>> mergeIndex(Indices current,
+			boolean variant) {
+		CompactIndex compactIndex = variant ? current.compactByVariant
+				: current.compactByBase;
+		Map<String, List<WordElement>> indexMap = variant ? current.byVariant
+				: current.byBase;
+		if (compactIndex == null && current.trie == null)
+			return indexMap;
+
+		Map<String, List<WordElement>> merged = current.trie == null ? new HashMap<String, List<WordElement>>()
+				: current.trie.toMap(variant);
+		for (int key = 0; compactIndex != null && key < compactIndex.size(); key++) {
+			List<WordElement> keyWords = new ArrayList<WordElement>();
+			for (int pos = compactIndex.start(key); pos < compactIndex.end(key); pos++)
+				keyWords.add(compactIndex.get(pos));
+			merged.put(compactIndex.key(key), keyWords);
+		}
+		for (Map.Entry<String, List<WordElement>> entry : indexMap.entrySet()) {
+			if (merged.containsKey(entry.getKey()))
+				merged.get(entry.getKey()).addAll(entry.getValue());
+			else
+				merged.put(entry.getKey(), entry.getValue());
+		}
+		return merged;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#addStatistics(simplenlg.lexicon.
+	 * LexiconStatistics, simplenlg.lexicon.MemoryEstimator)
+	 */
+	@Override
+	synchronized void addStatistics(LexiconStatistics statistics,
+			MemoryEstimator estimator) {
+		// words, including (for a lazy lexicon) the file and the words built
+		// from it so far
+		int wordCount = words.size();
+		long wordBytes = MemoryEstimator.hashMap(words.size())
+				+ estimator.words(words);
+		for (WordElement word : words)
+			if (word.getCategory() instanceof LexicalCategory)
+				statistics.addWords((LexicalCategory) word.getCategory(), 1);
+		if (lazy) {
+			LexicalCategory[] categories = LexicalCategory.values();
+			for (byte category : recordCategory)
+				statistics.addWords(categories[category], 1);
+			wordCount += records.size();
+			wordBytes += MemoryEstimator.array(source.length, 1)
+					+ MemoryEstimator.array(recordCategory.length, 1)
+					+ 2 * MemoryEstimator.array(records.size(), 4)
+					+ MemoryEstimator.array(materialised.length(),
+							MemoryEstimator.REFERENCE);
+			for (int record = 0; record < materialised.length(); record++) {
+				WordElement word = materialised.get(record);
+				if (word != null)
+					wordBytes += estimator.word(word);
+			}
+		}
+		statistics.addIndex(LexiconStatistics.WORDS, wordCount, wordCount,
+				wordBytes);
+
+		Indices current = indices;
+		addIndexStatistics(statistics, estimator,
+				LexiconStatistics.INDEX_BY_BASE, mergeIndex(current, false),
+				current.byBase, current.compactByBase, lazyIndexByBase);
+		addIndexStatistics(statistics, estimator,
+				LexiconStatistics.INDEX_BY_VARIANT, mergeIndex(current, true),
+				current.byVariant, current.compactByVariant,
+				lazyIndexByVariant);
+
+		int ids = indexByID.size()
+				+ (lazyIndexByID == null ? 0 : lazyIndexByID.size());
+		statistics.addIndex(LexiconStatistics.INDEX_BY_ID, ids, ids,
+				indexByID.estimateBytes(estimator)
+						+ (lazyIndexByID == null ? 0 : lazyIndexByID
+								.estimateBytes(estimator) + lazyIndexByID.size()
+								* MemoryEstimator.BOXED));
+
+		if (current.trie != null)
+			statistics.addIndex(LexiconStatistics.TRIE, current.trie.size(),
+					0, current.trie.estimateBytes());
+
+		Map<String, String[]> currentIndex = normalisedIndex;
+		if (currentIndex != null) {
+			int entryCount = 0;
+			long bytes = MemoryEstimator.hashMap(currentIndex.size());
+			for (Map.Entry<String, String[]> entry : currentIndex.entrySet()) {
+				entryCount += entry.getValue().length;
+				bytes += estimator.string(entry.getKey())
+						+ MemoryEstimator.array(entry.getValue().length,
+								MemoryEstimator.REFERENCE);
+			}
+			statistics.addIndex(LexiconStatistics.NORMALISED_INDEX,
+					currentIndex.size(), entryCount, bytes);
+		}
+	}
+
+	/**
+	 * add the keys, entries and bytes of an index, in whichever forms it is
+	 * held
+	 * 
+	 * @param statistics
+	 * @param estimator
+	 * @param name
+	 * @param entries
+	 *            - the built words of the index, see getIndexEntries
+	 * @param indexMap
+	 * @param compactIndex
+	 *            - may be <code>null</code>
+	 * @param lazyIndex
+	 *            - may be <code>null</code>
+	 */
+	private static void addIndexStatistics(LexiconStatistics statistics,
+			MemoryEstimator estimator, String name,
+			Map<String, List<WordElement>> entries,
+			Map<String, List<WordElement>> indexMap, CompactIndex compactIndex,
+			Map<String, int[]> lazyIndex) {
+		Set<String> keys = new HashSet<String>(entries.keySet());
+		int entryCount = 0;
+		for (List<WordElement> keyWords : entries.values())
+			entryCount += keyWords.size();
+		if (lazyIndex != null) {
+			keys.addAll(lazyIndex.keySet());
+			for (int[] keyRecords : lazyIndex.values())
+				entryCount += keyRecords.length;
+		}
+		long bytes = estimator.listIndex(indexMap)
+				+ estimator.recordIndex(lazyIndex);
+		if (compactIndex != null)
+			bytes += compactIndex.estimateBytes(estimator);
+		statistics.addIndex(name, keys.size(), entryCount, bytes);
+	}
+
+	/**
+	 * @param variant
+	 *            - <code>true</code> for the variant index, else the base form
+	 *            index
+	 * @return map from each key to the lexicon's own words, whichever form the
+	 *         index is in (not including words which a lazy lexicon has not
+	 *         built). The map must not be changed
+	 */
+	Map<String, List<WordElement>> getIndexEntries(boolean variant) {
+		return mergeIndex(indices, variant);
+	}
+
+	/**
+	 * @return index from base forms to words; it cannot be changed if the
+	 *         lexicon is read-only
+	 */
+	public Map<String, List<WordElement>> getIndexByBase() {
+		Map<String, List<WordElement>> indexByBase = indices.byBase;
+		return isReadOnly() ? Collections.unmodifiableMap(indexByBase)
+				: indexByBase;
+	}
+
+	/**
+	 * @return index from IDs to words; it cannot be changed if the lexicon is
+	 *         read-only
+	 */
+	public Map<String, WordElement> getIndexByID() {
+		return isReadOnly() ? Collections.unmodifiableMap(indexByID)
+				: indexByID;
+	}
+
+	/**
+	 * @return index from variants to words; it cannot be changed if the
+	 *         lexicon is read-only
+	 */
 	public Map<String, List<WordElement>> getIndexByVariant() {
-		return indexByVariant;
+		Map<String, List<WordElement>> indexByVariant = indices.byVariant;
+		return isReadOnly() ? Collections.unmodifiableMap(indexByVariant)
+				: indexByVariant;
 	}
 
-	public void setIndexByVariant(Map<String, List<WordElement>> indexByVariant) {
-		this.indexByVariant = indexByVariant;
+	public synchronized void setIndexByVariant(
+			Map<String, List<WordElement>> indexByVariant) {
+		checkWritable();
+		Indices current = indices;
+		indices = new Indices(current.byBase, indexByVariant,
+				current.compactByBase, current.compactByVariant, current.trie);
+		clearLookupCache();
 	}
 
 }
@@ -0,0 +1,445 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import simplenlg.features.Inflection;
+import simplenlg.framework.LexicalCategory;
+import simplenlg.framework.WordElement;
+import simplenlg.language.EnLanguage;
+
+/**
+ * This class reads words from a precompiled binary lexicon, as written by
+ * {@link simplenlg.lexicon.util.BinaryLexiconCompiler}. The file is memory
+ * mapped, so loading is near-instant and several JVMs on one host share the
+ * same pages; <code>WordElement</code>s are decoded from the mapped buffer
+ * each time they are looked up.
+ *
+ * <P>
+ * A binary lexicon can also be held in a direct buffer (see
+ * {@link simplenlg.lexicon.util.BinaryLexiconCompiler#compileOffHeap}), for
+ * example to load a large XML lexicon without a file. Either way the words
+ * and indices are outside the Java heap, so the garbage collector does not
+ * trace them, and the memory used is the size of the buffer.
+ *
+ * <P>
+ * File layout (all integers big-endian, all strings UTF-8 with an
+ * <code>int</code> length prefix, -1 meaning <code>null</code>):
+ * <UL>
+ * <LI>header: magic, version, language, word count, and the offsets of the
+ * base, variant and ID indices
+ * <LI>word records: category, base form, ID, default inflection, inflectional
+ * variants and features
+ * <LI>three indices, each a table of key offsets sorted by the UTF-8 bytes of
+ * the key, followed by the keys and their postings (record offsets)
+ * </UL>
+ */
+public class BinaryLexicon extends Lexicon {
+
+	/** magic number at the start of every binary lexicon ("SNLX") */
+	public static final int FORMAT_MAGIC = 0x534E4C58;
+
+	/** version of the binary format */
+	public static final int FORMAT_VERSION = 1;
+
+	/** feature value types */
+	public static final byte VALUE_STRING = 0;
+	public static final byte VALUE_BOOLEAN = 1;
+	public static final byte VALUE_INFLECTION = 2;
+
+	/** offset of the word count in the header */
+	public static final int HEADER_WORD_COUNT = 8;
+
+	/** encoding of all strings in the file */
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final LexicalCategory[] CATEGORIES = LexicalCategory.values();
+	private static final Inflection[] INFLECTIONS = Inflection.values();
+
+	// the mapped file
+	private ByteBuffer buffer = null;
+
+	// offsets of the three indices
+	private int baseIndex;
+	private int variantIndex;
+	private int idIndex;
+
+	/****************************************************************************/
+	// constructors
+	/****************************************************************************/
+
+	/**
+	 * Load a binary lexicon from a named file
+	 *
+	 * @param filename
+	 */
+	public BinaryLexicon(String filename) {
+		this(new File(filename));
+	}
+
+	/**
+	 * Load a binary lexicon from a File
+	 *
+	 * @param file
+	 */
+	public BinaryLexicon(File file) {
+		super();
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+						.size()));
+			} finally {
+				// the mapping stays valid after the file is closed
+				raf.close();
+			}
+		} catch (IOException ex) {
+			System.out.println("Cannot open binary lexicon: " + ex.toString());
+		}
+	}
+
+	/**
+	 * Read a binary lexicon held in a buffer, such as a direct buffer. The
+	 * buffer must not be changed while the lexicon is in use
+	 *
+	 * @param buffer
+	 *            - the whole lexicon, from position 0
+	 */
+	public BinaryLexicon(ByteBuffer buffer) {
+		super();
+		try {
+			open(buffer.duplicate().order(ByteOrder.BIG_ENDIAN));
+		} catch (IOException ex) {
+			System.out.println("Cannot open binary lexicon: " + ex.toString());
+		}
+	}
+
+	/**
+	 * check the header of a binary lexicon and remember where its indices are
+	 *
+	 * @param mapped
+	 *            - buffer holding the whole lexicon
+	 * @throws IOException
+	 *             if this is not a binary lexicon of the right version
+	 */
+	private void open(ByteBuffer mapped) throws IOException {
+		if (mapped.getInt(0) != FORMAT_MAGIC)
+			throw new IOException("not a binary lexicon");
+		if (mapped.getInt(4) != FORMAT_VERSION)
+			throw new IOException("unsupported binary lexicon version "
+					+ mapped.getInt(4));
+
+		baseIndex = mapped.getInt(HEADER_WORD_COUNT + 4);
+		variantIndex = mapped.getInt(HEADER_WORD_COUNT + 8);
+		idIndex = mapped.getInt(HEADER_WORD_COUNT + 12);
+
+		String language = readString(mapped, HEADER_WORD_COUNT + 16);
+		if (language != null)
+			setLanguage(EnLanguage.valueOf(language));
+
+		buffer = mapped;
+	}
+
+	/**
+	 * @return <code>true</code> if the lexicon is held outside the Java heap
+	 *         (in a mapped file or a direct buffer)
+	 */
+	public boolean isOffHeap() {
+		return buffer != null && buffer.isDirect();
+	}
+
+	/**
+	 * @return number of word records in the lexicon
+	 */
+	public int getWordCount() {
+		return buffer == null ? 0 : buffer.getInt(HEADER_WORD_COUNT);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#addStatistics(simplenlg.lexicon.
+	 * LexiconStatistics, simplenlg.lexicon.MemoryEstimator)
+	 */
+	@Override
+	void addStatistics(LexiconStatistics statistics, MemoryEstimator estimator) {
+		if (buffer == null)
+			return;
+		// the whole file is counted with the words, as it is mapped rather
+		// than held in objects
+		int words = getWordCount();
+		statistics.addIndex(LexiconStatistics.WORDS, words, words, buffer
+				.capacity());
+
+		// every record is in at least one index
+		BitSet counted = new BitSet();
+		countWords(statistics, baseIndex, counted);
+		countWords(statistics, variantIndex, counted);
+		countWords(statistics, idIndex, counted);
+
+		addIndexStatistics(statistics, LexiconStatistics.INDEX_BY_BASE, baseIndex);
+		addIndexStatistics(statistics, LexiconStatistics.INDEX_BY_VARIANT, variantIndex);
+		addIndexStatistics(statistics, LexiconStatistics.INDEX_BY_ID, idIndex);
+	}
+
+	/**
+	 * count the categories of the records in an index which have not been
+	 * counted yet
+	 * 
+	 * @param statistics
+	 * @param index
+	 *            - offset of the index
+	 * @param counted
+	 *            - offsets of the records counted so far
+	 */
+	private void countWords(LexiconStatistics statistics, int index,
+			BitSet counted) {
+		for (int k = 0; k < buffer.getInt(index); k++) {
+			int entry = buffer.getInt(index + 4 + 4 * k);
+			int pos = entry + 4 + buffer.getInt(entry);
+			for (int i = 0; i < buffer.getInt(pos); i++) {
+				int record = buffer.getInt(pos + 4 + 4 * i);
+				if (!counted.get(record)) {
+					counted.set(record);
+					statistics.addWords(CATEGORIES[buffer.get(record)], 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * add the keys and entries of an index; its bytes are part of the file
+	 * 
+	 * @param statistics
+	 * @param name
+	 * @param index
+	 *            - offset of the index
+	 */
+	private void addIndexStatistics(LexiconStatistics statistics, String name,
+			int index) {
+		int keys = buffer.getInt(index);
+		int entries = 0;
+		for (int k = 0; k < keys; k++) {
+			int entry = buffer.getInt(index + 4 + 4 * k);
+			entries += buffer.getInt(entry + 4 + buffer.getInt(entry));
+		}
+		statistics.addIndex(name, keys, entries, 0);
+	}
+
+	/****************************************************************************/
+	// core methods to retrieve words
+	/****************************************************************************/
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see simplenlg.lexicon.Lexicon#getWords(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public List<WordElement> getWords(String baseForm, LexicalCategory category) {
+		return getWordsFromIndex(baseForm, category, baseIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see simplenlg.lexicon.Lexicon#getWordsByID(java.lang.String)
+	 */
+	@Override
+	public List<WordElement> getWordsByID(String id) {
+		return getWordsFromIndex(id, LexicalCategory.ANY, idIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see simplenlg.lexicon.Lexicon#getWordsFromVariant(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public List<WordElement> getWordsFromVariant(String variant,
+			LexicalCategory category) {
+		return getWordsFromIndex(variant, category, variantIndex);
+	}
+
+	/**
+	 * decode the words stored under a key in one of the indices
+	 *
+	 * @param key
+	 * @param category
+	 *            - category filter (ANY for all)
+	 * @param index
+	 *            - offset of the index
+	 * @return list of matching words (may be empty)
+	 */
+	private List<WordElement> getWordsFromIndex(String key,
+			LexicalCategory category, int index) {
+		List<WordElement> result = new ArrayList<WordElement>();
+		if (buffer == null || key == null)
+			return result;
+
+		int entry = findKey(key.getBytes(UTF8), index);
+		if (entry < 0)
+			return result;
+
+		// skip the key, then read the postings
+		int pos = entry + 4 + buffer.getInt(entry);
+		int count = buffer.getInt(pos);
+		for (int i = 0; i < count; i++) {
+			int record = buffer.getInt(pos + 4 + 4 * i);
+			// the category is the first byte of a record, so we can filter
+			// without decoding the word
+			if (category == LexicalCategory.ANY
+					|| CATEGORIES[buffer.get(record)] == category)
+				result.add(readWord(record));
+		}
+		return result;
+	}
+
+	/**
+	 * binary search an index for a key
+	 *
+	 * @param key
+	 *            - UTF-8 bytes of the key
+	 * @param index
+	 *            - offset of the index
+	 * @return offset of the key entry, or -1 if the key is not in the index
+	 */
+	private int findKey(byte[] key, int index) {
+		int low = 0;
+		int high = buffer.getInt(index) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int entry = buffer.getInt(index + 4 + 4 * mid);
+			int cmp = compareKey(entry, key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return entry;
+		}
+		return -1;
+	}
+
+	/**
+	 * compare the key stored at an offset with a key, as unsigned bytes
+	 *
+	 * @param entry
+	 * @param key
+	 * @return negative, zero or positive, as for <code>compareTo</code>
+	 */
+	private int compareKey(int entry, byte[] key) {
+		int length = buffer.getInt(entry);
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++) {
+			int a = buffer.get(entry + 4 + i) & 0xff;
+			int b = key[i] & 0xff;
+			if (a != b)
+				return a - b;
+		}
+		return length - key.length;
+	}
+
+	/**
+	 * decode the word record at an offset
+	 *
+	 * @param record
+	 * @return a new WordElement
+	 */
+	private WordElement readWord(int record) {
+		int pos = record;
+		LexicalCategory category = CATEGORIES[buffer.get(pos++)];
+		String base = readString(buffer, pos);
+		pos += stringSize(buffer, pos);
+		String id = readString(buffer, pos);
+		pos += stringSize(buffer, pos);
+
+		WordElement word = new WordElement(base, category, id);
+
+		byte defaultInfl = buffer.get(pos++);
+		int inflCount = buffer.get(pos++);
+		int inflStart = pos;
+		pos += inflCount;
+
+		int featureCount = buffer.getShort(pos);
+		pos += 2;
+		for (int i = 0; i < featureCount; i++) {
+			String feature = readString(buffer, pos);
+			pos += stringSize(buffer, pos);
+			byte type = buffer.get(pos++);
+			if (type == VALUE_BOOLEAN) {
+				word.setFeature(feature, buffer.get(pos++) != 0);
+			} else if (type == VALUE_INFLECTION) {
+				word.setFeature(feature, INFLECTIONS[buffer.get(pos++)]);
+			} else {
+				word.setFeature(feature, readString(buffer, pos));
+				pos += stringSize(buffer, pos);
+			}
+		}
+
+		// same order as the XML lexicon: the default is set before the
+		// (formless) variants are added, so it does not clear any features
+		if (defaultInfl >= 0)
+			word.setDefaultInflectionalVariant(INFLECTIONS[defaultInfl]);
+		for (int i = 0; i < inflCount; i++)
+			word.addInflectionalVariant(INFLECTIONS[buffer.get(inflStart + i)]);
+
+		return word;
+	}
+
+	/**
+	 * read a length-prefixed UTF-8 string at an offset
+	 *
+	 * @param buf
+	 * @param pos
+	 * @return the string, or <code>null</code>
+	 */
+	private static String readString(ByteBuffer buf, int pos) {
+		int length = buf.getInt(pos);
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = buf.get(pos + 4 + i);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * @param buf
+	 * @param pos
+	 * @return number of bytes taken by the string at an offset
+	 */
+	private static int stringSize(ByteBuffer buf, int pos) {
+		return 4 + Math.max(0, buf.getInt(pos));
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import simplenlg.framework.WordElement;
+
+/**
+ * A read-only index from strings to words, built from an index map once a
+ * lexicon is loaded. Keys are held in one sorted array and the words for all
+ * keys in another, with the words for each key stored contiguously, so the
+ * index needs no map entries or lists and looking up a key allocates nothing.
+ */
+class CompactIndex {
+
+	private final String[] keys; // sorted keys
+	private final int[] ranges; // words of keys[k] are postings[ranges[k]] up
+								// to postings[ranges[k + 1]]
+	private final WordElement[] postings;
+
+	/**
+	 * build a compact copy of an index map
+	 * 
+	 * @param index
+	 */
+	CompactIndex(Map<String, List<WordElement>> index) {
+		keys = index.keySet().toArray(new String[index.size()]);
+		Arrays.sort(keys);
+
+		ranges = new int[keys.length + 1];
+		int size = 0;
+		for (int k = 0; k < keys.length; k++) {
+			ranges[k] = size;
+			size += index.get(keys[k]).size();
+		}
+		ranges[keys.length] = size;
+
+		postings = new WordElement[size];
+		for (int k = 0; k < keys.length; k++) {
+			int pos = ranges[k];
+			for (WordElement word : index.get(keys[k]))
+				postings[pos++] = word;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return position of the key, or -1 if it is not in the index
+	 */
+	int find(String key) {
+		if (key == null)
+			return -1;
+		int k = Arrays.binarySearch(keys, key);
+		return k < 0 ? -1 : k;
+	}
+
+	/**
+	 * @param k
+	 *            - position of a key
+	 * @return position of the first word for the key
+	 */
+	int start(int k) {
+		return ranges[k];
+	}
+
+	/**
+	 * @param k
+	 *            - position of a key
+	 * @return position after the last word for the key
+	 */
+	int end(int k) {
+		return ranges[k + 1];
+	}
+
+	/**
+	 * @param pos
+	 *            - position of a word
+	 * @return the word
+	 */
+	WordElement get(int pos) {
+		return postings[pos];
+	}
+
+	/**
+	 * @param k
+	 *            - position of a key
+	 * @return the key
+	 */
+	String key(int k) {
+		return keys[k];
+	}
+
+	/**
+	 * @return number of keys
+	 */
+	int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @param estimator
+	 * @return estimated bytes retained by the index, less the words
+	 */
+	long estimateBytes(MemoryEstimator estimator) {
+		long bytes = MemoryEstimator.OBJECT_HEADER + 3 * MemoryEstimator.REFERENCE
+				+ MemoryEstimator.array(keys.length, MemoryEstimator.REFERENCE)
+				+ MemoryEstimator.array(ranges.length, 4)
+				+ MemoryEstimator.array(postings.length, MemoryEstimator.REFERENCE);
+		for (String key : keys)
+			bytes += estimator.string(key);
+		return bytes;
+	}
+
+}
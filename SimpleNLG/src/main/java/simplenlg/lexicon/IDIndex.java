@@ -0,0 +1,285 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import simplenlg.framework.CompactUUID;
+
+/**
+ * A map from lexicon IDs to values which stores IDs that are UUIDs as two
+ * <code>long</code>s, in open-addressed arrays, rather than as strings in
+ * hash map entries. A UUID is found by comparing longs, starting at a slot
+ * taken from its (random) low bits, so no string is hashed or kept. Other
+ * IDs are kept in an ordinary map. The string form of a UUID is only built
+ * when the map is iterated.
+ * 
+ * <P>
+ * Values must not be <code>null</code>.
+ */
+class IDIndex<V> extends AbstractMap<String, V> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/* IDs which are not UUIDs */
+	private final Map<String, V> others = new HashMap<String, V>();
+
+	/* UUIDs and their values; a null value is an empty slot */
+	private long[] highs = new long[INITIAL_CAPACITY];
+	private long[] lows = new long[INITIAL_CAPACITY];
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private int uuids = 0;
+
+	/**
+	 * @param high
+	 * @param low
+	 *            - bits of a UUID, see {@link CompactUUID}
+	 * @return the value for the UUID, or <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	V get(long high, long low) {
+		int slot = find(high, low);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	/**
+	 * @param high
+	 * @param low
+	 *            - bits of a UUID, see {@link CompactUUID}
+	 * @param value
+	 * @return the previous value for the UUID, or <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	V put(long high, long low, V value) {
+		if (value == null) {
+			V previous = get(high, low);
+			if (previous != null)
+				delete(find(high, low));
+			return previous;
+		}
+		if ((uuids + 1) * 4 > values.length * 3)
+			resize(values.length * 2);
+		int mask = values.length - 1;
+		int slot = slot(low, mask);
+		while (values[slot] != null) {
+			if (highs[slot] == high && lows[slot] == low) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		highs[slot] = high;
+		lows[slot] = low;
+		values[slot] = value;
+		uuids++;
+		return null;
+	}
+
+	@Override
+	public V get(Object key) {
+		if (isUUID(key))
+			return get(CompactUUID.high((String) key), CompactUUID
+					.low((String) key));
+		return others.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V put(String key, V value) {
+		if (isUUID(key))
+			return put(CompactUUID.high(key), CompactUUID.low(key), value);
+		return others.put(key, value);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		if (!isUUID(key))
+			return others.remove(key);
+		int slot = find(CompactUUID.high((String) key), CompactUUID
+				.low((String) key));
+		if (slot < 0)
+			return null;
+		V previous = (V) values[slot];
+		delete(slot);
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return others.size() + uuids;
+	}
+
+	@Override
+	public void clear() {
+		others.clear();
+		highs = new long[INITIAL_CAPACITY];
+		lows = new long[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+		uuids = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, V>> entrySet() {
+		return new AbstractSet<Map.Entry<String, V>>() {
+			@Override
+			public Iterator<Map.Entry<String, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return IDIndex.this.size();
+			}
+		};
+	}
+
+	/**
+	 * @param estimator
+	 * @return estimated bytes retained by the index, less the values
+	 */
+	long estimateBytes(MemoryEstimator estimator) {
+		long bytes = MemoryEstimator.hashMap(others.size())
+				+ 2 * MemoryEstimator.array(values.length, 8)
+				+ MemoryEstimator.array(values.length, MemoryEstimator.REFERENCE);
+		for (String key : others.keySet())
+			bytes += estimator.string(key);
+		return bytes;
+	}
+
+	/* iterates over the other IDs, then the UUIDs */
+	private class EntryIterator implements Iterator<Map.Entry<String, V>> {
+		private final Iterator<Map.Entry<String, V>> otherEntries = others
+				.entrySet().iterator();
+		private int slot = nextSlot(0);
+
+		public boolean hasNext() {
+			return otherEntries.hasNext() || slot < values.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Map.Entry<String, V> next() {
+			if (otherEntries.hasNext())
+				return otherEntries.next();
+			if (slot >= values.length)
+				throw new NoSuchElementException();
+			Map.Entry<String, V> entry = new AbstractMap.SimpleImmutableEntry<String, V>(
+					CompactUUID.toString(highs[slot], lows[slot]),
+					(V) values[slot]);
+			slot = nextSlot(slot + 1);
+			return entry;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * @param from
+	 * @return the first full slot at or after a slot
+	 */
+	private int nextSlot(int from) {
+		while (from < values.length && values[from] == null)
+			from++;
+		return from;
+	}
+
+	private static boolean isUUID(Object key) {
+		return key instanceof String && CompactUUID.isUUID((String) key);
+	}
+
+	/* the bits of a UUID are random, so its low bits are used as they are */
+	private static int slot(long low, int mask) {
+		return (int) (low ^ (low >>> 32)) & mask;
+	}
+
+	/**
+	 * @param high
+	 * @param low
+	 * @return slot of a UUID, or -1 if it is not in the index
+	 */
+	private int find(long high, long low) {
+		int mask = values.length - 1;
+		int slot = slot(low, mask);
+		while (values[slot] != null) {
+			if (highs[slot] == high && lows[slot] == low)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * empty a slot, moving later UUIDs back so none is cut off from its first
+	 * slot
+	 * 
+	 * @param slot
+	 */
+	private void delete(int slot) {
+		int mask = values.length - 1;
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (values[next] != null) {
+			int home = slot(lows[next], mask);
+			// move the UUID into the gap unless its home lies after the gap
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				highs[gap] = highs[next];
+				lows[gap] = lows[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[gap] = null;
+		uuids--;
+	}
+
+	private void resize(int capacity) {
+		long[] oldHighs = highs;
+		long[] oldLows = lows;
+		Object[] oldValues = values;
+		highs = new long[capacity];
+		lows = new long[capacity];
+		values = new Object[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = slot(oldLows[i], mask);
+				while (values[slot] != null)
+					slot = (slot + 1) & mask;
+				highs[slot] = oldHighs[i];
+				lows[slot] = oldLows[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -18,13 +18,15 @@
  */
 package simplenlg.lexicon;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import simplenlg.framework.LexicalCategory;
 import simplenlg.framework.WordElement;
 import simplenlg.language.EnLanguage;
-import simplenlg.lexicon.english.EnglishXMLLexicon;
-import simplenlg.lexicon.portuguese.PortugueseXMLLexicon;
 
 /**
  * This is the generic abstract class for a Lexicon. In simplenlg V4, a
@@ -81,31 +83,87 @@ import simplenlg.lexicon.portuguese.PortugueseXMLLexicon;
 public abstract class Lexicon {
 
 	private EnLanguage language;
+
+	/** default number of unknown words remembered by <code>lookupWord</code> */
+	public static final int DEFAULT_LOOKUP_CACHE_SIZE = 1000;
+
+	// words created by lookupWord for forms which are not in the lexicon, most
+	// recently used last
+	private volatile int lookupCacheSize = DEFAULT_LOOKUP_CACHE_SIZE;
+	private final Map<String, WordElement> lookupCache = new LinkedHashMap<String, WordElement>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, WordElement> eldest) {
+			return size() > lookupCacheSize;
+		}
+	};
+
+	// records the words looked up, see setWarmSet()
+	private volatile WarmSet warmSet = null;
+
+	// set for lexicons shared through LexiconRegistry, see setReadOnly()
+	private volatile boolean readOnly = false;
 	
 	public EnLanguage getLanguage() {
 		return language;
 	}
 
 	public void setLanguage(EnLanguage language) {
+		checkWritable();
 		this.language = language;
 	}
 
+	/**
+	 * make the lexicon read-only. This is done to lexicons shared through
+	 * {@link LexiconRegistry}, which are used by many threads at once: methods
+	 * which add words, change settings or close the lexicon then throw an
+	 * <code>IllegalStateException</code>
+	 */
+	void setReadOnly() {
+		readOnly = true;
+	}
 
 	/**
-	 * returns the default built-in lexicon
+	 * @return <code>true</code> if the lexicon is shared, and so cannot be
+	 *         changed or closed
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * called by methods which change the lexicon
+	 * 
+	 * @throws IllegalStateException
+	 *             if the lexicon is read-only
+	 */
+	protected void checkWritable() {
+		if (readOnly)
+			throw new IllegalStateException(
+					"Lexicon is shared and cannot be changed or closed");
+	}
+
+
+	/**
+	 * returns the default built-in lexicon. The lexicon is loaded once and
+	 * shared, see {@link LexiconRegistry}
 	 * 
 	 * @return default lexicon
 	 */
 	public static Lexicon getEnglishDefaultLexicon() {
-		AbstractXMLLexicon lexicon = new EnglishXMLLexicon("default-lexicon.xml", "/simplenlg/lexicon/default-lexicon.xml");
-		lexicon.setLanguage(EnLanguage.ENGLISH);
-		return lexicon;
+		return LexiconRegistry.getLexicon(LexiconRegistry.ENGLISH);
 	}
 
+	/**
+	 * returns the default built-in Portuguese lexicon. The lexicon is loaded
+	 * once and shared, see {@link LexiconRegistry}
+	 * 
+	 * @return default Portuguese lexicon
+	 */
 	public static Lexicon getPortugueseDefaultLexicon() {
-		AbstractXMLLexicon lexicon = new PortugueseXMLLexicon("default-portuguese-lexicon.xml", "src/main/resources/default-portuguese-lexicon.xml");
-		lexicon.setLanguage(EnLanguage.PORTUGUESE);
-		return lexicon;
+		return LexiconRegistry.getLexicon(LexiconRegistry.PORTUGUESE);
 	}
 
 	/**
@@ -155,14 +213,57 @@ public abstract class Lexicon {
 	 * @return word
 	 */
 	public WordElement lookupWord(String baseForm, LexicalCategory category) {
-		if (hasWord(baseForm, category))
-			return getWord(baseForm, category);
-		else if (hasWordFromVariant(baseForm, category))
-			return getWordFromVariant(baseForm, category);
-		else if (hasWordByID(baseForm))
-			return getWordByID(baseForm);
-		else
-			return createWord(baseForm, category);
+		recordLookup(baseForm, category);
+
+		// forms which are not in the lexicon are remembered, with the word
+		// created for them, so looking them up again is a single probe
+		String key = category + ":" + baseForm;
+		WordElement created;
+		synchronized (lookupCache) {
+			created = lookupCache.get(key);
+		}
+		if (created != null)
+			return new WordElement(created);
+
+		WordElement word = resolveWord(baseForm, category);
+		if (word != null)
+			return word;
+
+		created = createWord(baseForm, category);
+		if (lookupCacheSize > 0) {
+			synchronized (lookupCache) {
+				lookupCache.put(key, created);
+			}
+			// callers get their own view, so they cannot change the cached word
+			return new WordElement(created);
+		}
+		return created;
+	}
+
+	/**
+	 * Find the word which <code>lookupWord</code> would return, trying base
+	 * form, variant and ID (in this order), but without creating a new word if
+	 * there is none. Each index is only searched once; lexicons which can pick
+	 * a word without building lists of matches should override this
+	 * 
+	 * @param baseForm
+	 * @param category
+	 * @return word, or <code>null</code> if the lexicon has no matching word
+	 */
+	public WordElement resolveWord(String baseForm, LexicalCategory category) {
+		List<WordElement> wordElements = getWords(baseForm, category);
+		if (!wordElements.isEmpty())
+			return selectMatchingWord(wordElements, baseForm);
+
+		wordElements = getWordsFromVariant(baseForm, category);
+		if (!wordElements.isEmpty())
+			return selectMatchingWord(wordElements, baseForm);
+
+		wordElements = getWordsByID(baseForm);
+		if (!wordElements.isEmpty())
+			return wordElements.get(0);
+
+		return null;
 	}
 
 	/**
@@ -176,6 +277,26 @@ public abstract class Lexicon {
 		return lookupWord(baseForm, LexicalCategory.ANY);
 	}
 
+	/**
+	 * Look up several words in one call, for example all the words needed for
+	 * a document. Each word is found as by
+	 * {@link #lookupWord(String, LexicalCategory)}. Lexicons for which each
+	 * lookup is expensive (such as DB lexicons) should override this to group
+	 * their queries
+	 * 
+	 * @param keys
+	 *            - base forms and categories of the words
+	 * @return map from each key to its word, in the order of the keys
+	 */
+	public Map<WordKey, WordElement> lookupWords(Collection<WordKey> keys) {
+		Map<WordKey, WordElement> words = new LinkedHashMap<WordKey, WordElement>();
+		for (WordKey key : keys) {
+			if (!words.containsKey(key))
+				words.put(key, lookupWord(key.getBaseForm(), key.getCategory()));
+		}
+		return words;
+	}
+
 	/****************************************************************************/
 	// get words by baseform and category
 	// fundamental version is getWords(String baseForm, Category category),
@@ -230,7 +351,7 @@ public abstract class Lexicon {
 	             - base form of word, eg "be" or "dog" (not "is" or "dogs")
 	 * @return single WordElement (from list)
 	 */
-	private WordElement selectMatchingWord(List<WordElement> wordElements, String baseForm) {
+	protected WordElement selectMatchingWord(List<WordElement> wordElements, String baseForm) {
 		// EHUD REITER  - this method added because some DBs are case-insensitive,
 		// so a query on "man" returns both "man" and "MAN".  In such cases, the
 		// exact match (eg, "man") should be returned
@@ -498,6 +619,133 @@ public abstract class Lexicon {
 	// other methods
 	/****************************************************************************/
 
+	/**
+	 * forget the words which <code>lookupWord</code> created for forms not in
+	 * the lexicon. This must be called if words are added to the lexicon (or to
+	 * one of the lexicons it searches) after it has been used
+	 */
+	public void clearLookupCache() {
+		synchronized (lookupCache) {
+			lookupCache.clear();
+		}
+	}
+
+	/**
+	 * set how many forms which are not in the lexicon are remembered by
+	 * <code>lookupWord</code>. The least recently used are forgotten first
+	 * 
+	 * @param size
+	 *            - maximum number of forms, 0 to remember none
+	 */
+	public void setLookupCacheSize(int size) {
+		checkWritable();
+		synchronized (lookupCache) {
+			lookupCacheSize = Math.max(0, size);
+			if (lookupCacheSize == 0)
+				lookupCache.clear();
+			else if (lookupCache.size() > lookupCacheSize) {
+				// drop the least recently used forms
+				Iterator<String> keys = lookupCache.keySet()
+						.iterator();
+				while (lookupCache.size() > lookupCacheSize) {
+					keys.next();
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return how many forms which are not in the lexicon are remembered by
+	 *         <code>lookupWord</code>
+	 */
+	public int getLookupCacheSize() {
+		return lookupCacheSize;
+	}
+
+	/**
+	 * record the words looked up by <code>lookupWord</code> and
+	 * <code>lookupWords</code> in a warm set, which can be saved and used to
+	 * preload the lexicon the next time it is started
+	 * 
+	 * @param warmSet
+	 *            - <code>null</code> to stop recording
+	 */
+	public void setWarmSet(WarmSet warmSet) {
+		checkWritable();
+		this.warmSet = warmSet;
+	}
+
+	/**
+	 * @return warm set recording lookups, or <code>null</code>
+	 */
+	public WarmSet getWarmSet() {
+		return warmSet;
+	}
+
+	/**
+	 * record a lookup in the warm set, if there is one. Lexicons which
+	 * override <code>lookupWord</code> or <code>lookupWords</code> without
+	 * calling this class's version should call this
+	 * 
+	 * @param baseForm
+	 * @param category
+	 */
+	void recordLookup(String baseForm, LexicalCategory category) {
+		WarmSet currentWarmSet = warmSet;
+		if (currentWarmSet != null)
+			currentWarmSet.record(baseForm, category);
+	}
+
+	/**
+	 * look up the words of a warm set, so that later lookups of them are
+	 * fast: a DB lexicon caches them, a lazy XML lexicon builds them and a
+	 * binary lexicon reads in their part of the file. This should be called
+	 * before the lexicon takes traffic
+	 * 
+	 * @param warmSet
+	 *            - words to look up, see {@link WarmSet#read(java.io.File)}
+	 */
+	public void preload(WarmSet warmSet) {
+		for (WordKey key : warmSet.getKeys())
+			lookupWord(key.getBaseForm(), key.getCategory());
+	}
+
+	/**
+	 * report what the lexicon holds in memory: the number of words of each
+	 * category, and the number of keys, entries and estimated bytes of its
+	 * words and indices
+	 * 
+	 * @return statistics of the lexicon
+	 */
+	public LexiconStatistics getStatistics() {
+		LexiconStatistics statistics = new LexiconStatistics();
+		MemoryEstimator estimator = new MemoryEstimator();
+		addStatistics(statistics, estimator);
+
+		synchronized (lookupCache) {
+			long bytes = MemoryEstimator.hashMap(lookupCache.size());
+			for (Map.Entry<String, WordElement> entry : lookupCache.entrySet())
+				bytes += estimator.string(entry.getKey())
+						+ estimator.word(entry.getValue());
+			statistics.addIndex(LexiconStatistics.LOOKUP_CACHE, lookupCache
+					.size(), lookupCache.size(), bytes);
+		}
+		return statistics;
+	}
+
+	/**
+	 * add the words and indices of this lexicon to its statistics. Lexicons
+	 * which hold words in memory should override this
+	 * 
+	 * @param statistics
+	 * @param estimator
+	 *            - counts each object once, even if it is in several lexicons
+	 */
+	void addStatistics(LexiconStatistics statistics, MemoryEstimator estimator) {
+		// default lexicon holds nothing
+	}
+
 	/**
 	 * close the lexicon (if necessary) if lexicon does not need to be closed,
 	 * this does nothing
@@ -0,0 +1,259 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Bloom filters over the base forms, variants and IDs of a lexicon. A filter
+ * can say that a form is definitely not in the lexicon, so a lexicon with a
+ * slow backing store (such as {@link NIHDBLexicon}) does not need to query it.
+ * A form which passes the filter may still not be in the lexicon, with a
+ * probability of about the false positive rate the filter was built for.
+ * 
+ * <P>
+ * Forms are compared ignoring case, as lexicon databases may find words
+ * that way. A filter can be saved with {@link #write(File)} when a lexicon is
+ * exported, and read back with {@link #read(File)} when it is loaded.
+ */
+public class LexiconFilter {
+
+	/** false positive rate used if none is given */
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+	// file format
+	private static final int FORMAT_MAGIC = 0x534E4C46; // "SNLF"
+	private static final int FORMAT_VERSION = 1;
+
+	private final BloomFilter baseFilter;
+	private final BloomFilter variantFilter;
+	private final BloomFilter idFilter;
+
+	/**
+	 * Build filters holding the given forms
+	 * 
+	 * @param baseForms
+	 * @param variants
+	 *            - every form which a variant lookup can find
+	 * @param ids
+	 * @param falsePositiveRate
+	 *            - wanted rate of forms which pass a filter but are not in it,
+	 *            between 0 and 1
+	 */
+	public LexiconFilter(Collection<String> baseForms,
+			Collection<String> variants, Collection<String> ids,
+			double falsePositiveRate) {
+		this(BloomFilter.create(baseForms, falsePositiveRate), BloomFilter
+				.create(variants, falsePositiveRate), BloomFilter.create(ids,
+				falsePositiveRate));
+	}
+
+	private LexiconFilter(BloomFilter baseFilter, BloomFilter variantFilter,
+			BloomFilter idFilter) {
+		this.baseFilter = baseFilter;
+		this.variantFilter = variantFilter;
+		this.idFilter = idFilter;
+	}
+
+	/**
+	 * @param baseForm
+	 * @return <code>false</code> if no word has this base form
+	 */
+	public boolean mightHaveBase(String baseForm) {
+		return baseFilter.mightContain(baseForm);
+	}
+
+	/**
+	 * @param variant
+	 * @return <code>false</code> if no word has this variant
+	 */
+	public boolean mightHaveVariant(String variant) {
+		return variantFilter.mightContain(variant);
+	}
+
+	/**
+	 * @param id
+	 * @return <code>false</code> if no word has this ID
+	 */
+	public boolean mightHaveID(String id) {
+		return idFilter.mightContain(id);
+	}
+
+	/**
+	 * @return size of the filters' bit arrays, in bytes
+	 */
+	public long getBytes() {
+		return 8L * (baseFilter.bits.length + variantFilter.bits.length + idFilter.bits.length);
+	}
+
+	/**
+	 * Save the filters to a file
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			out.writeInt(FORMAT_MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			baseFilter.write(out);
+			variantFilter.write(out);
+			idFilter.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Read filters saved by {@link #write(File)}
+	 * 
+	 * @param file
+	 * @return the filters
+	 * @throws IOException
+	 *             if the file cannot be read, or does not hold filters
+	 */
+	public static LexiconFilter read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != FORMAT_MAGIC)
+				throw new IOException("not a lexicon filter");
+			int version = in.readInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("unsupported lexicon filter version "
+						+ version);
+			return new LexiconFilter(BloomFilter.read(in),
+					BloomFilter.read(in), BloomFilter.read(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * A Bloom filter over strings, ignoring case. Each string sets
+	 * <code>hashes</code> bits, found from two halves of a 64-bit FNV-1a hash
+	 * of the string (so the bits are the same in every JVM, and a filter can
+	 * be saved)
+	 */
+	private static final class BloomFilter {
+
+		private final long[] bits;
+		private final int hashes;
+
+		private BloomFilter(long[] bits, int hashes) {
+			this.bits = bits;
+			this.hashes = hashes;
+		}
+
+		/**
+		 * @param keys
+		 * @param falsePositiveRate
+		 * @return filter with the optimal number of bits and hashes for the
+		 *         keys and rate
+		 */
+		static BloomFilter create(Collection<String> keys,
+				double falsePositiveRate) {
+			double rate = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+			int n = Math.max(1, keys.size());
+			long bitCount = (long) Math.ceil(-n * Math.log(rate)
+					/ (Math.log(2) * Math.log(2)));
+			int words = (int) Math.min(Integer.MAX_VALUE - 8,
+					Math.max(1, (bitCount + 63) / 64));
+			int hashes = (int) Math.max(1, Math.round(64.0 * words / n
+					* Math.log(2)));
+			BloomFilter filter = new BloomFilter(new long[words], Math.min(
+					hashes, 30));
+			for (String key : keys)
+				filter.add(key);
+			return filter;
+		}
+
+		void add(String key) {
+			long hash = hash(key);
+			long size = 64L * bits.length;
+			for (int i = 0; i < hashes; i++) {
+				long bit = bit(hash, i, size);
+				bits[(int) (bit >>> 6)] |= 1L << bit;
+			}
+		}
+
+		boolean mightContain(String key) {
+			if (key == null)
+				return false;
+			long hash = hash(key);
+			long size = 64L * bits.length;
+			for (int i = 0; i < hashes; i++) {
+				long bit = bit(hash, i, size);
+				if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * @return the i-th bit for a hash, by double hashing
+		 */
+		private static long bit(long hash, int i, long size) {
+			long combined = (hash & 0xFFFFFFFFL) + i * ((hash >>> 32) | 1);
+			return combined % size;
+		}
+
+		/**
+		 * @return 64-bit FNV-1a hash of the lower case key
+		 */
+		private static long hash(String key) {
+			String lower = key.toLowerCase(Locale.ENGLISH);
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < lower.length(); i++) {
+				hash ^= lower.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+			return hash;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(hashes);
+			out.writeInt(bits.length);
+			for (long word : bits)
+				out.writeLong(word);
+		}
+
+		static BloomFilter read(DataInputStream in) throws IOException {
+			int hashes = in.readInt();
+			int words = in.readInt();
+			if (hashes < 1 || words < 1)
+				throw new IOException("corrupt lexicon filter");
+			long[] bits = new long[words];
+			for (int i = 0; i < words; i++)
+				bits[i] = in.readLong();
+			return new BloomFilter(bits, hashes);
+		}
+	}
+}
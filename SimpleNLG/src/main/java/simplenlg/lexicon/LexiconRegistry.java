@@ -0,0 +1,198 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import simplenlg.language.EnLanguage;
+import simplenlg.lexicon.english.EnglishXMLLexicon;
+import simplenlg.lexicon.portuguese.PortugueseXMLLexicon;
+
+/**
+ * This class holds lexicons which are shared by every component in the JVM.
+ * Each named lexicon is loaded at most once, the first time it is asked for
+ * (or when it is pre-warmed), and the same instance is returned to every
+ * caller after that. If several threads ask for a lexicon while it is loading,
+ * they all wait for the one load to finish.
+ * 
+ * <P>
+ * The default English and Portuguese lexicons are registered as
+ * {@link #ENGLISH} and {@link #PORTUGUESE}; other lexicons can be added with
+ * {@link #register(String, Lexicon)} or {@link #register(String, LexiconLoader)}.
+ * 
+ * <P>
+ * Shared lexicons are used by many threads at once, so they are made
+ * read-only (see {@link Lexicon#isReadOnly()}): closing them, adding words to
+ * them or changing their settings throws an
+ * <code>IllegalStateException</code>.
+ */
+public class LexiconRegistry {
+
+	/** name of the default English lexicon */
+	public static final String ENGLISH = "english";
+
+	/** name of the default Portuguese lexicon */
+	public static final String PORTUGUESE = "portuguese";
+
+	/* loaders for lexicons which have not been loaded yet */
+	private static final ConcurrentMap<String, LexiconLoader> loaders = new ConcurrentHashMap<String, LexiconLoader>();
+
+	/* lexicons which are loaded, or being loaded */
+	private static final ConcurrentMap<String, FutureTask<Lexicon>> lexicons = new ConcurrentHashMap<String, FutureTask<Lexicon>>();
+
+	static {
+		loaders.put(ENGLISH, new LexiconLoader() {
+			public Lexicon load() {
+				AbstractXMLLexicon lexicon = new EnglishXMLLexicon("default-lexicon.xml", "/simplenlg/lexicon/default-lexicon.xml");
+				lexicon.setLanguage(EnLanguage.ENGLISH);
+				return lexicon;
+			}
+		});
+		loaders.put(PORTUGUESE, new LexiconLoader() {
+			public Lexicon load() {
+				AbstractXMLLexicon lexicon = new PortugueseXMLLexicon("default-portuguese-lexicon.xml", "src/main/resources/default-portuguese-lexicon.xml");
+				lexicon.setLanguage(EnLanguage.PORTUGUESE);
+				return lexicon;
+			}
+		});
+	}
+
+	/* no instances; all methods are static */
+	private LexiconRegistry() {
+	}
+
+	/**
+	 * get a named lexicon, loading it if this is the first request for it
+	 * 
+	 * @param name
+	 *            - name the lexicon was registered under
+	 * @return the shared lexicon
+	 * @throws IllegalArgumentException
+	 *             if no lexicon is registered under this name
+	 * @throws IllegalStateException
+	 *             if the lexicon could not be loaded
+	 */
+	public static Lexicon getLexicon(String name) {
+		FutureTask<Lexicon> task = lexicons.get(name);
+
+		if (task == null) {
+			final LexiconLoader loader = loaders.get(name);
+			if (loader == null)
+				throw new IllegalArgumentException("No lexicon registered as "
+						+ name);
+
+			FutureTask<Lexicon> newTask = new FutureTask<Lexicon>(
+					new Callable<Lexicon>() {
+						public Lexicon call() {
+							Lexicon lexicon = loader.load();
+							lexicon.setReadOnly();
+							return lexicon;
+						}
+					});
+			task = lexicons.putIfAbsent(name, newTask);
+			if (task == null) {
+				// we won the race, so we do the loading
+				task = newTask;
+				task.run();
+			}
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading lexicon "
+					+ name, ex);
+		} catch (ExecutionException ex) {
+			// forget the failed load, so that a later request can try again
+			lexicons.remove(name, task);
+			throw new IllegalStateException("Cannot load lexicon " + name, ex
+					.getCause());
+		}
+	}
+
+	/**
+	 * register a loader for a named lexicon. The lexicon is loaded the first
+	 * time it is asked for; if a lexicon was already loaded under this name, it
+	 * is replaced (callers which already hold it keep using it)
+	 * 
+	 * @param name
+	 * @param loader
+	 */
+	public static void register(String name, LexiconLoader loader) {
+		loaders.put(name, loader);
+		lexicons.remove(name);
+	}
+
+	/**
+	 * register an already-loaded lexicon under a name, replacing any lexicon
+	 * previously registered under that name. The lexicon is made read-only
+	 * 
+	 * @param name
+	 * @param lexicon
+	 */
+	public static void register(String name, final Lexicon lexicon) {
+		lexicon.setReadOnly();
+		FutureTask<Lexicon> task = new FutureTask<Lexicon>(
+				new Callable<Lexicon>() {
+					public Lexicon call() {
+						return lexicon;
+					}
+				});
+		task.run();
+		lexicons.put(name, task);
+	}
+
+	/**
+	 * remove a named lexicon and its loader. Callers which already hold the
+	 * lexicon keep using it, and it stays read-only
+	 * 
+	 * @param name
+	 */
+	public static void unregister(String name) {
+		loaders.remove(name);
+		lexicons.remove(name);
+	}
+
+	/**
+	 * load named lexicons now, rather than on first use. Call this at start-up
+	 * so that the first request does not pay the loading cost
+	 * 
+	 * @param names
+	 *            - names of lexicons to load
+	 */
+	public static void prewarm(String... names) {
+		for (String name : names)
+			getLexicon(name);
+	}
+
+	/**
+	 * @param name
+	 * @return <code>true</code> if the named lexicon has been loaded
+	 */
+	public static boolean isLoaded(String name) {
+		FutureTask<Lexicon> task = lexicons.get(name);
+		return task != null && task.isDone();
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import simplenlg.framework.LexicalCategory;
+
+/**
+ * What a lexicon holds, and roughly how much heap it uses: the number of
+ * words in each category, and for the words and each index, the number of
+ * distinct keys, the number of entries and an estimate of the bytes
+ * retained. Returned by {@link Lexicon#getStatistics()}.
+ * 
+ * <P>
+ * Byte counts are estimates for a 64-bit JVM with compressed references.
+ * Each object is counted once, in the first structure which holds it (words
+ * before indices), so the byte counts can be added up.
+ */
+public class LexiconStatistics {
+
+	/** the words of the lexicon; keys and entries are both the word count */
+	public static final String WORDS = "words";
+
+	/** the index from base forms to words */
+	public static final String INDEX_BY_BASE = "indexByBase";
+
+	/** the index from variants to words */
+	public static final String INDEX_BY_VARIANT = "indexByVariant";
+
+	/** the index from IDs to words */
+	public static final String INDEX_BY_ID = "indexByID";
+
+	/** the trie over base forms and variants, see {@link AbstractXMLLexicon#buildTrie()} */
+	public static final String TRIE = "trie";
+
+	/** the index from normalised forms, see {@link AbstractXMLLexicon#buildNormalisedIndex()} */
+	public static final String NORMALISED_INDEX = "normalisedIndex";
+
+	/** the index over several lexicons, see {@link MultipleLexicon#buildMergedIndex()} */
+	public static final String MERGED_INDEX = "mergedIndex";
+
+	/** words created by <code>lookupWord</code> for forms not in the lexicon */
+	public static final String LOOKUP_CACHE = "lookupCache";
+
+	/**
+	 * The size of one structure of a lexicon
+	 */
+	public static class IndexStatistics {
+		private final String name;
+		private int keys;
+		private int entries;
+		private long bytes;
+
+		IndexStatistics(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return name of the structure, such as {@link LexiconStatistics#INDEX_BY_BASE}
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return number of distinct keys
+		 */
+		public int getKeys() {
+			return keys;
+		}
+
+		/**
+		 * @return number of entries (words indexed under all keys)
+		 */
+		public int getEntries() {
+			return entries;
+		}
+
+		/**
+		 * @return estimated bytes retained
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": " + keys + " keys, " + entries + " entries, ~"
+					+ bytes + " bytes";
+		}
+	}
+
+	private final Map<LexicalCategory, Integer> wordCounts = new EnumMap<LexicalCategory, Integer>(
+			LexicalCategory.class);
+	private final Map<String, IndexStatistics> indices = new LinkedHashMap<String, IndexStatistics>();
+
+	/**
+	 * create empty statistics, for a lexicon which holds nothing in memory
+	 */
+	public LexiconStatistics() {
+	}
+
+	/**********************************************************************/
+	// building the statistics
+	/**********************************************************************/
+
+	/**
+	 * count words of a category
+	 * 
+	 * @param category
+	 * @param count
+	 */
+	void addWords(LexicalCategory category, int count) {
+		if (count == 0)
+			return;
+		Integer current = wordCounts.get(category);
+		wordCounts.put(category, (current == null ? 0 : current) + count);
+	}
+
+	/**
+	 * add to the size of a structure
+	 * 
+	 * @param name
+	 * @param keys
+	 * @param entries
+	 * @param bytes
+	 */
+	void addIndex(String name, int keys, int entries, long bytes) {
+		IndexStatistics index = indices.get(name);
+		if (index == null) {
+			index = new IndexStatistics(name);
+			indices.put(name, index);
+		}
+		index.keys += keys;
+		index.entries += entries;
+		index.bytes += bytes;
+	}
+
+	/**********************************************************************/
+	// reading the statistics
+	/**********************************************************************/
+
+	/**
+	 * @return number of words in the lexicon
+	 */
+	public int getWordCount() {
+		int count = 0;
+		for (Integer categoryCount : wordCounts.values())
+			count += categoryCount;
+		return count;
+	}
+
+	/**
+	 * @param category
+	 * @return number of words of a category
+	 */
+	public int getWordCount(LexicalCategory category) {
+		Integer count = wordCounts.get(category);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * @return number of words of each category which has any
+	 */
+	public Map<LexicalCategory, Integer> getWordCounts() {
+		return Collections.unmodifiableMap(wordCounts);
+	}
+
+	/**
+	 * @param name
+	 *            - name of a structure, such as {@link #INDEX_BY_BASE}
+	 * @return its size, or <code>null</code> if the lexicon does not have it
+	 */
+	public IndexStatistics getIndex(String name) {
+		return indices.get(name);
+	}
+
+	/**
+	 * @return sizes of all structures of the lexicon
+	 */
+	public Collection<IndexStatistics> getIndices() {
+		return Collections.unmodifiableCollection(indices.values());
+	}
+
+	/**
+	 * @return estimated bytes retained by all structures
+	 */
+	public long getBytes() {
+		long bytes = 0;
+		for (IndexStatistics index : indices.values())
+			bytes += index.bytes;
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(getWordCount()).append(" words ").append(wordCounts)
+				.append(", ~").append(getBytes()).append(" bytes");
+		for (IndexStatistics index : indices.values())
+			result.append('\n').append(index);
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import simplenlg.features.Inflection;
+import simplenlg.framework.WordElement;
+
+/**
+ * Estimates how many bytes of heap the structures of a lexicon retain. Sizes
+ * are those of a 64-bit JVM with compressed references; they are estimates,
+ * for comparing lexicons and load modes rather than exact accounting.
+ * 
+ * <P>
+ * Each object is only counted once, by the first structure it is found in,
+ * so strings and words shared between structures are not counted twice.
+ */
+class MemoryEstimator {
+
+	// sizes of object headers and references
+	static final int OBJECT_HEADER = 12;
+	static final int ARRAY_HEADER = 16;
+	static final int REFERENCE = 4;
+
+	// sizes of common objects
+	private static final int STRING = 24;
+	private static final int HASH_MAP = 48;
+	private static final int HASH_MAP_ENTRY = 32;
+	private static final int ARRAY_LIST = 24;
+	static final int BOXED = 16;
+	// an NLGElement and WordElement, less its features
+	private static final int WORD_ELEMENT = 64;
+	// an InflectionSet with its map, per inflectional variant
+	private static final int INFLECTION_SET = 96;
+
+	/* objects counted so far */
+	private final Map<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+
+	/**
+	 * @param bytes
+	 * @return bytes rounded up to the 8-byte alignment of objects
+	 */
+	static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * @param length
+	 * @param elementSize
+	 *            - bytes per element
+	 * @return size of an array
+	 */
+	static long array(int length, int elementSize) {
+		return align(ARRAY_HEADER + (long) length * elementSize);
+	}
+
+	/**
+	 * @param size
+	 *            - number of entries
+	 * @return size of a HashMap (or HashSet, roughly), less its keys and
+	 *         values
+	 */
+	static long hashMap(int size) {
+		if (size == 0)
+			return HASH_MAP;
+		int capacity = 16;
+		while (capacity * 3 / 4 < size)
+			capacity <<= 1;
+		return HASH_MAP + array(capacity, REFERENCE) + (long) size
+				* HASH_MAP_ENTRY;
+	}
+
+	/**
+	 * @param size
+	 * @return size of an ArrayList, less its elements
+	 */
+	static long arrayList(int size) {
+		return ARRAY_LIST + array(Math.max(size, 1), REFERENCE);
+	}
+
+	/**
+	 * @param object
+	 * @return <code>true</code> the first time an object is seen
+	 */
+	boolean firstSeen(Object object) {
+		return object != null && seen.put(object, Boolean.TRUE) == null;
+	}
+
+	/**
+	 * @param value
+	 * @return size of a string, or 0 if it has been counted already
+	 */
+	long string(String value) {
+		if (!firstSeen(value))
+			return 0;
+		return STRING + array(value.length(), 2);
+	}
+
+	/**
+	 * @param word
+	 * @return size of a word and its features, or 0 if it has been counted
+	 *         already
+	 */
+	long word(WordElement word) {
+		if (!firstSeen(word))
+			return 0;
+		long bytes = WORD_ELEMENT + string(word.getBaseForm());
+		if (!word.hasCompactId())
+			bytes += string(word.getId());
+		Collection<String> features = word.getAllFeatureNames();
+		bytes += hashMap(features.size());
+		for (String feature : features)
+			bytes += string(feature) + value(word.getFeature(feature));
+		int inflections = 0;
+		for (Inflection infl : Inflection.values())
+			if (word.hasInflectionalVariant(infl))
+				inflections++;
+		if (inflections > 0)
+			bytes += hashMap(inflections) + inflections * INFLECTION_SET;
+		return bytes;
+	}
+
+	/**
+	 * @param words
+	 * @return size of some words
+	 */
+	long words(Collection<WordElement> words) {
+		long bytes = 0;
+		for (WordElement word : words)
+			bytes += word(word);
+		return bytes;
+	}
+
+	/**
+	 * @param value
+	 *            - a feature value
+	 * @return size of the value
+	 */
+	private long value(Object value) {
+		if (value == null || value instanceof Boolean || value instanceof Enum)
+			return 0; // shared constants
+		if (value instanceof String)
+			return string((String) value);
+		if (value instanceof WordElement)
+			return word((WordElement) value);
+		if (!firstSeen(value))
+			return 0;
+		if (value instanceof Collection<?>) {
+			long bytes = arrayList(((Collection<?>) value).size());
+			for (Object element : (Collection<?>) value)
+				bytes += value(element);
+			return bytes;
+		}
+		return BOXED;
+	}
+
+	/**
+	 * @param index
+	 * @return size of an index from keys to lists of words, less the words
+	 */
+	long listIndex(Map<String, List<WordElement>> index) {
+		if (index == null)
+			return 0;
+		long bytes = hashMap(index.size());
+		for (Map.Entry<String, List<WordElement>> entry : index.entrySet())
+			bytes += string(entry.getKey())
+					+ arrayList(entry.getValue().size());
+		return bytes;
+	}
+
+	/**
+	 * @param index
+	 * @return size of an index from keys to words, less the words
+	 */
+	long idIndex(Map<String, WordElement> index) {
+		if (index == null)
+			return 0;
+		if (index instanceof IDIndex<?>)
+			return ((IDIndex<?>) index).estimateBytes(this);
+		long bytes = hashMap(index.size());
+		for (String key : index.keySet())
+			bytes += string(key);
+		return bytes;
+	}
+
+	/**
+	 * @param index
+	 * @return size of a lazy index from keys to positions in the lexicon file
+	 */
+	long recordIndex(Map<String, ?> index) {
+		if (index == null)
+			return 0;
+		long bytes = hashMap(index.size());
+		for (Map.Entry<String, ?> entry : index.entrySet()) {
+			bytes += string(entry.getKey());
+			if (entry.getValue() instanceof int[])
+				bytes += array(((int[]) entry.getValue()).length, 4);
+			else
+				bytes += BOXED;
+		}
+		return bytes;
+	}
+
+}
@@ -19,7 +19,18 @@
 package simplenlg.lexicon;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import simplenlg.framework.LexicalCategory;
 import simplenlg.framework.WordElement;
@@ -27,20 +38,78 @@ import simplenlg.framework.WordElement;
 /** This class contains a set of lexicons, which are searched in
  * order for the specified word
  * 
+ * <P>
+ * Searching every lexicon for every word can be avoided by calling
+ * {@link #buildMergedIndex()}, which puts the words of all static lexicons
+ * (XML lexicons which are not lazy, unless marked dynamic with
+ * {@link #setDynamic(Lexicon, boolean)}) into one index. A lookup is then one
+ * probe of that index, plus a search of each dynamic lexicon (such as an
+ * NIHDB lexicon). The results are the same as without the index.
+ * 
  * @author ereiter
  *
  */
 public class MultipleLexicon extends Lexicon {
 	
+	// kinds of lookup
+	private static final int BASE = 0;
+	private static final int VARIANT = 1;
+	private static final int ID = 2;
+
+	// threads for searching dynamic lexicons in parallel
+	private static final ExecutorService SEARCH_EXECUTOR = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "multiple-lexicon-search");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
 	/* if this flag is true, all lexicons are searched for
 	 * this word, even after a match is found
 	 * it is false by default
 	 * */
 	private boolean alwaysSearchAll = false;
 	
+	/* if this flag is true (and alwaysSearchAll is true), dynamic lexicons
+	 * are searched at the same time, on separate threads
+	 * */
+	private boolean parallelSearch = false;
+
 	/* list of lexicons, in order in which they are searched */
 	private List<Lexicon> lexiconList = null;
 
+	/* lexicons which are never put in the merged index */
+	private Set<Lexicon> dynamicLexicons = Collections
+			.newSetFromMap(new IdentityHashMap<Lexicon, Boolean>());
+
+	/* words of the static lexicons, see buildMergedIndex() */
+	private volatile MergedIndex mergedIndex = null;
+
+	/* a word in the merged index, and the lexicon it came from */
+	private static class Posting {
+		final int lexicon; // position in the list of lexicons
+		final WordElement word;
+
+		Posting(int lexicon, WordElement word) {
+			this.lexicon = lexicon;
+			this.word = word;
+		}
+	}
+
+	/* the merged index, and the lexicons it was built from */
+	private static class MergedIndex {
+		final Lexicon[] lexicons;
+		final boolean[] merged; // true if the lexicon's words are in the index
+		final List<Map<String, Posting[]>> indices = new ArrayList<Map<String, Posting[]>>(); // by kind
+
+		MergedIndex(Lexicon[] lexicons) {
+			this.lexicons = lexicons;
+			this.merged = new boolean[lexicons.length];
+		}
+	}
+
 	/**********************************************************************/
 	// constructors
 	/**********************************************************************/
@@ -52,6 +121,9 @@ public class MultipleLexicon extends Lexicon {
 		super();
 		lexiconList = new ArrayList<Lexicon>();
 		alwaysSearchAll = false;
+		// words added to the lexicons searched would not clear this
+		// lexicon's cache, so it does not remember words it did not find
+		setLookupCacheSize(0);
 	}
 	
 	/** create a multi lexicon with the specified lexicons
@@ -71,14 +143,18 @@ public class MultipleLexicon extends Lexicon {
 	 * @param lex
 	 */
 	public void addInitialLexicon(Lexicon lex) {
+		checkWritable();
 		lexiconList.add(0, lex);
+		lexiconsChanged();
 	}
 
 	/** add lexicon at end of list (is searched last)
 	 * @param lex
 	 */
 	public void addFinalLexicon(Lexicon lex) {
-		lexiconList.add(0, lex);
+		checkWritable();
+		lexiconList.add(lex);
+		lexiconsChanged();
 	}
 
 	/**
@@ -92,9 +168,131 @@ public class MultipleLexicon extends Lexicon {
 	 * @param alwaysSearchAll the alwaysSearchAll to set
 	 */
 	public void setAlwaysSearchAll(boolean alwaysSearchAll) {
+		checkWritable();
 		this.alwaysSearchAll = alwaysSearchAll;
 	}
 
+	/**
+	 * @return the parallelSearch
+	 */
+	public boolean isParallelSearch() {
+		return parallelSearch;
+	}
+
+	/**
+	 * @param parallelSearch
+	 *            if true, and alwaysSearchAll is true, the lexicons which are
+	 *            not in the merged index are searched at the same time, on
+	 *            separate threads
+	 */
+	public void setParallelSearch(boolean parallelSearch) {
+		checkWritable();
+		this.parallelSearch = parallelSearch;
+	}
+
+	/**
+	 * mark a lexicon as dynamic (its words may change, so it is always
+	 * searched) or static (its words may be put in the merged index)
+	 * 
+	 * @param lex
+	 *            - one of the lexicons in this multi lexicon
+	 * @param dynamic
+	 */
+	public void setDynamic(Lexicon lex, boolean dynamic) {
+		checkWritable();
+		if (dynamic)
+			dynamicLexicons.add(lex);
+		else
+			dynamicLexicons.remove(lex);
+		lexiconsChanged();
+	}
+
+	/**
+	 * @param lex
+	 * @return true if the lexicon is always searched, rather than being put
+	 *         in the merged index
+	 */
+	public boolean isDynamic(Lexicon lex) {
+		return dynamicLexicons.contains(lex)
+				|| !(lex instanceof AbstractXMLLexicon)
+				|| ((AbstractXMLLexicon) lex).isLazy();
+	}
+
+	/**
+	 * Put the words of all static lexicons into one index, so that they can be
+	 * found with one probe instead of a search of each lexicon. This must be
+	 * called again if words are added to a static lexicon; it is called
+	 * automatically when lexicons are added or marked dynamic.
+	 */
+	public synchronized void buildMergedIndex() {
+		checkWritable();
+		MergedIndex index = new MergedIndex(lexiconList
+				.toArray(new Lexicon[lexiconList.size()]));
+		List<Map<String, List<Posting>>> postings = new ArrayList<Map<String, List<Posting>>>();
+		for (int kind = BASE; kind <= ID; kind++)
+			postings.add(new HashMap<String, List<Posting>>());
+
+		for (int i = 0; i < index.lexicons.length; i++) {
+			if (isDynamic(index.lexicons[i]))
+				continue;
+			AbstractXMLLexicon lex = (AbstractXMLLexicon) index.lexicons[i];
+			index.merged[i] = true;
+			addPostings(postings.get(BASE), i, lex.getIndexEntries(false));
+			addPostings(postings.get(VARIANT), i, lex.getIndexEntries(true));
+			for (Map.Entry<String, WordElement> entry : lex.getIndexByID()
+					.entrySet())
+				addPosting(postings.get(ID), entry.getKey(), new Posting(i,
+						entry.getValue()));
+		}
+
+		for (int kind = BASE; kind <= ID; kind++) {
+			Map<String, List<Posting>> kindPostings = postings.get(kind);
+			// UUID IDs are kept as longs, as in the lexicons
+			Map<String, Posting[]> kindIndex = kind == ID ? new IDIndex<Posting[]>()
+					: new HashMap<String, Posting[]>();
+			for (Map.Entry<String, List<Posting>> entry : kindPostings
+					.entrySet())
+				kindIndex.put(entry.getKey(), entry.getValue().toArray(
+						new Posting[entry.getValue().size()]));
+			index.indices.add(kindIndex);
+		}
+		mergedIndex = index;
+		clearLookupCache();
+	}
+
+	/**
+	 * @return true if {@link #buildMergedIndex()} has been called
+	 */
+	public boolean isMerged() {
+		return mergedIndex != null;
+	}
+
+	private static void addPostings(Map<String, List<Posting>> postings,
+			int lexicon, Map<String, List<WordElement>> entries) {
+		for (Map.Entry<String, List<WordElement>> entry : entries.entrySet())
+			for (WordElement word : entry.getValue())
+				addPosting(postings, entry.getKey(), new Posting(lexicon, word));
+	}
+
+	private static void addPosting(Map<String, List<Posting>> postings,
+			String key, Posting posting) {
+		List<Posting> keyPostings = postings.get(key);
+		if (keyPostings == null) {
+			keyPostings = new ArrayList<Posting>(1);
+			postings.put(key, keyPostings);
+		}
+		keyPostings.add(posting);
+	}
+
+	/**
+	 * the list of lexicons, or which are dynamic, has changed
+	 */
+	private void lexiconsChanged() {
+		if (mergedIndex != null)
+			buildMergedIndex();
+		clearLookupCache();
+	}
+
 	/**********************************************************************/
 	// main methods
 	/**********************************************************************/
@@ -104,16 +302,7 @@ public class MultipleLexicon extends Lexicon {
 	 */
 	@Override
 	public List<WordElement> getWords(String baseForm, LexicalCategory category) {
-		List<WordElement> result = new ArrayList<WordElement>();
-		for (Lexicon lex: lexiconList) {
-			List<WordElement> lexResult = lex.getWords(baseForm, category);
-			if (lexResult != null && !lexResult.isEmpty()) {
-				result.addAll(lexResult);
-				if (!alwaysSearchAll)
-					return result;
-			}
-		}
-		return result;
+		return search(BASE, baseForm, category);
 	}
 
 	/* (non-Javadoc)
@@ -121,16 +310,7 @@ public class MultipleLexicon extends Lexicon {
 	 */
 	@Override
 	public List<WordElement> getWordsByID(String id) {
-		List<WordElement> result = new ArrayList<WordElement>();
-		for (Lexicon lex: lexiconList) {
-			List<WordElement> lexResult = lex.getWordsByID(id);
-			if (lexResult != null && !lexResult.isEmpty()) {
-				result.addAll(lexResult);
-				if (!alwaysSearchAll)
-					return result;
-			}
-		}
-		return result;
+		return search(ID, id, LexicalCategory.ANY);
 	}
 
 	/* (non-Javadoc)
@@ -138,9 +318,47 @@ public class MultipleLexicon extends Lexicon {
 	 */
 	@Override
 	public List<WordElement> getWordsFromVariant(String variant, LexicalCategory category) {
+		return search(VARIANT, variant, category);
+	}
+
+	/**
+	 * search the lexicons in order, using the merged index for the lexicons
+	 * in it
+	 * 
+	 * @param kind
+	 *            - BASE, VARIANT or ID
+	 * @param key
+	 * @param category
+	 * @return matching words
+	 */
+	private List<WordElement> search(int kind, String key,
+			LexicalCategory category) {
+		MergedIndex index = mergedIndex;
+		Lexicon[] lexicons = index == null ? lexiconList
+				.toArray(new Lexicon[lexiconList.size()]) : index.lexicons;
+		Posting[] postings = index == null ? null : index.indices.get(kind)
+				.get(key);
+
+		// start searching the dynamic lexicons
+		List<Future<List<WordElement>>> searches = null;
+		if (alwaysSearchAll && parallelSearch) {
+			searches = new ArrayList<Future<List<WordElement>>>();
+			for (int i = 0; i < lexicons.length; i++)
+				searches.add(index != null && index.merged[i] ? null
+						: SEARCH_EXECUTOR.submit(search(lexicons[i], kind, key,
+								category)));
+		}
+
 		List<WordElement> result = new ArrayList<WordElement>();
-		for (Lexicon lex: lexiconList) {
-			List<WordElement> lexResult = lex.getWordsFromVariant(variant, category);
+		for (int i = 0; i < lexicons.length; i++) {
+			List<WordElement> lexResult;
+			if (index != null && index.merged[i])
+				lexResult = getWords(postings, i, category);
+			else if (searches != null)
+				lexResult = getResult(searches.get(i));
+			else
+				lexResult = search(lexicons[i], kind, key, category).call();
+
 			if (lexResult != null && !lexResult.isEmpty()) {
 				result.addAll(lexResult);
 				if (!alwaysSearchAll)
@@ -150,16 +368,130 @@ public class MultipleLexicon extends Lexicon {
 		return result;
 	}
 
+	/**
+	 * @param lex
+	 * @param kind
+	 *            - BASE, VARIANT or ID
+	 * @param key
+	 * @param category
+	 * @return a search of one lexicon
+	 */
+	private static LexiconSearch search(Lexicon lex, int kind, String key,
+			LexicalCategory category) {
+		return new LexiconSearch(lex, kind, key, category);
+	}
+
+	/* a search of one lexicon, which can be run on another thread */
+	private static class LexiconSearch implements Callable<List<WordElement>> {
+		private final Lexicon lex;
+		private final int kind;
+		private final String key;
+		private final LexicalCategory category;
+
+		LexiconSearch(Lexicon lex, int kind, String key,
+				LexicalCategory category) {
+			this.lex = lex;
+			this.kind = kind;
+			this.key = key;
+			this.category = category;
+		}
+
+		public List<WordElement> call() {
+			if (kind == BASE)
+				return lex.getWords(key, category);
+			else if (kind == VARIANT)
+				return lex.getWordsFromVariant(key, category);
+			else
+				return lex.getWordsByID(key);
+		}
+	}
+
+	/**
+	 * @param search
+	 * @return result of a search on another thread
+	 */
+	private static List<WordElement> getResult(Future<List<WordElement>> search) {
+		try {
+			return search.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException ex) {
+			System.out.println("Lexicon search error: " + ex.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * @param postings
+	 *            - postings for a key in the merged index, may be
+	 *            <code>null</code>
+	 * @param lexicon
+	 *            - position of a lexicon
+	 * @param category
+	 * @return copies of the words of that lexicon in the postings
+	 */
+	private static List<WordElement> getWords(Posting[] postings, int lexicon,
+			LexicalCategory category) {
+		List<WordElement> words = new ArrayList<WordElement>();
+		if (postings != null) {
+			for (Posting posting : postings) {
+				if (posting.lexicon == lexicon
+						&& (category == LexicalCategory.ANY || posting.word
+								.getCategory() == category))
+					words.add(new WordElement(posting.word));
+			}
+		}
+		return words;
+	}
+
 
 	/**********************************************************************/
 	// other methods
 	/**********************************************************************/
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#addStatistics(simplenlg.lexicon.
+	 * LexiconStatistics, simplenlg.lexicon.MemoryEstimator)
+	 */
+	@Override
+	void addStatistics(LexiconStatistics statistics, MemoryEstimator estimator) {
+		// words shared by several lexicons are counted once for bytes, but
+		// once per lexicon for keys and entries
+		for (Lexicon lex : lexiconList)
+			lex.addStatistics(statistics, estimator);
+
+		MergedIndex index = mergedIndex;
+		if (index != null) {
+			int keys = 0;
+			int entries = 0;
+			long bytes = 0;
+			for (Map<String, Posting[]> kindIndex : index.indices) {
+				keys += kindIndex.size();
+				bytes += MemoryEstimator.hashMap(kindIndex.size());
+				for (Map.Entry<String, Posting[]> entry : kindIndex.entrySet()) {
+					entries += entry.getValue().length;
+					bytes += estimator.string(entry.getKey())
+							+ MemoryEstimator.array(entry.getValue().length,
+									MemoryEstimator.REFERENCE)
+							+ entry.getValue().length
+							* MemoryEstimator.align(MemoryEstimator.OBJECT_HEADER
+									+ 4 + MemoryEstimator.REFERENCE);
+				}
+			}
+			statistics.addIndex(LexiconStatistics.MERGED_INDEX, keys, entries,
+					bytes);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see simplenlg.lexicon.Lexicon#close()
 	 */
 	@Override
 	public void close() {
+		checkWritable();
 		// close component lexicons
 		for (Lexicon lex: lexiconList)
 			lex.close();
@@ -29,10 +29,21 @@ import gov.nih.nlm.nls.lexCheck.Lib.VerbEntry;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import simplenlg.features.Inflection;
 import simplenlg.features.LexicalFeature;
@@ -43,6 +54,17 @@ import simplenlg.framework.WordElement;
 /**
  * This class gets Words from the NIH Specialist Lexicon
  * 
+ * <P>
+ * The lexicon can hold a pool of DB connections, each with its own lexical
+ * access object, so that several threads can look up words at the same time.
+ * A thread which finds all connections in use waits for one to be released.
+ * 
+ * <P>
+ * Words are cached, so that words which are looked up again and again (such
+ * as "be") only go to the DB once. The cache holds
+ * {@link #DEFAULT_CACHE_SIZE} lookups unless set with
+ * {@link #setCacheSize(int)}.
+ * 
  * @author ereiter
  * 
  */
@@ -57,12 +79,30 @@ public class NIHDBLexicon extends Lexicon {
 	private static String DB_HSQL_EXTENSION = ".data"; // filename extension for
 	// HSQL DB
 
+	/** default number of DB connections */
+	public static final int DEFAULT_POOL_SIZE = 1;
+
+	/** default number of lookups whose results are cached */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	// kinds of lookup, which are cached separately
+	private static final String LOOKUP_BASE = "base";
+	private static final String LOOKUP_ID = "id";
+	private static final String LOOKUP_VARIANT = "variant";
+
 	// class variables
-	private Connection conn = null; // DB connection
-	private LexAccessApi lexdb = null; // Lexicon access object
+	private List<LexAccessApi> lexdbs = new ArrayList<LexAccessApi>(); // Lexicon
+	// access objects, one per DB connection
+	private BlockingQueue<LexAccessApi> pool = null; // access objects not in use
+
+	// results of earlier lookups
+	private WordListCache cache = new WordListCache(DEFAULT_CACHE_SIZE);
 
 	// if false, don't keep standard inflections in the Word object
-	private boolean keepStandardInflections = false;
+	private volatile boolean keepStandardInflections = false;
+
+	// forms which are definitely not in the DB, see setFilter()
+	private volatile LexiconFilter filter = null;
 
 	/****************************************************************************/
 	// constructors
@@ -76,6 +116,20 @@ public class NIHDBLexicon extends Lexicon {
 	 *            of HSQL DB
 	 */
 	public NIHDBLexicon(String filename) {
+		this(filename, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * set up lexicon using file which contains downloaded lexAccess HSQL DB and
+	 * default passwords, with a pool of DB connections
+	 * 
+	 * @param filename
+	 *            of HSQL DB
+	 * @param poolSize
+	 *            - number of DB connections, ie of threads which can look up
+	 *            words at the same time
+	 */
+	public NIHDBLexicon(String filename, int poolSize) {
 		super();
 		// get rid of .data at end of filename if necessary
 		String dbfilename = filename;
@@ -83,18 +137,8 @@ public class NIHDBLexicon extends Lexicon {
 			dbfilename = dbfilename.substring(0, dbfilename.length()
 					- DB_HSQL_EXTENSION.length());
 
-		// try to open DB and set up lexicon
-		try {
-			Class.forName(DB_HSQL_DRIVER);
-			conn = DriverManager.getConnection(DB_HQSL_JDBC + dbfilename,
-					DB_DEFAULT_USERNAME, DB_DEFAULT_PASSWORD);
-			// now set up lexical access object
-			lexdb = new LexAccessApi(conn);
-
-		} catch (Exception ex) {
-			System.out.println("Cannot open lexical db: " + ex.toString());
-			// probably should thrown an exception
-		}
+		open(DB_HSQL_DRIVER, DB_HQSL_JDBC + dbfilename, DB_DEFAULT_USERNAME,
+				DB_DEFAULT_PASSWORD, poolSize);
 	}
 
 	/**
@@ -108,21 +152,94 @@ public class NIHDBLexicon extends Lexicon {
 	 */
 	public NIHDBLexicon(String driver, String url, String username,
 			String password) {
+		this(driver, url, username, password, DEFAULT_POOL_SIZE);
+	}
 
+	/**
+	 * set up lexicon using general DB parameters, with a pool of DB
+	 * connections; DB must be NIH specialist lexicon from lexAccess
+	 * 
+	 * @param driver
+	 * @param url
+	 * @param username
+	 * @param password
+	 * @param poolSize
+	 *            - number of DB connections, ie of threads which can look up
+	 *            words at the same time
+	 */
+	public NIHDBLexicon(String driver, String url, String username,
+			String password, int poolSize) {
 		super();
+		open(driver, url, username, password, poolSize);
+	}
+
+	/**
+	 * open the DB connections and set up a lexical access object for each
+	 * 
+	 * @param driver
+	 * @param url
+	 * @param username
+	 * @param password
+	 * @param poolSize
+	 */
+	private void open(String driver, String url, String username,
+			String password, int poolSize) {
+		pool = new ArrayBlockingQueue<LexAccessApi>(Math.max(1, poolSize));
 
 		// try to open DB and set up lexicon
 		try {
 			Class.forName(driver);
-			conn = DriverManager.getConnection(url, username, password);
-			// now set up lexical access object
-			lexdb = new LexAccessApi(conn);
+			for (int i = 0; i < poolSize; i++) {
+				Connection conn = DriverManager.getConnection(url, username,
+						password);
+				// now set up lexical access object
+				LexAccessApi lexdb = new LexAccessApi(conn);
+				lexdbs.add(lexdb);
+				pool.add(lexdb);
+			}
 		} catch (Exception ex) {
 			System.out.println("Cannot open lexical db: " + ex.toString());
 			// probably should thrown an exception
 		}
 	}
 
+	/**
+	 * @return number of DB connections which were opened
+	 */
+	public int getPoolSize() {
+		return lexdbs.size();
+	}
+
+	/**
+	 * take a lexical access object from the pool, waiting if all are in use.
+	 * It must be given back with {@link #release(LexAccessApi)}
+	 * 
+	 * @return lexical access object
+	 * @throws SQLException
+	 *             if there is no DB connection, or the thread is interrupted
+	 */
+	private LexAccessApi borrow() throws SQLException {
+		if (lexdbs.isEmpty())
+			throw new SQLException("no connection to lexical db");
+		try {
+			return pool.take();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted waiting for lexical db");
+		}
+	}
+
+	/**
+	 * give a lexical access object back to the pool
+	 * 
+	 * @param lexdb
+	 *            - may be <code>null</code>
+	 */
+	private void release(LexAccessApi lexdb) {
+		if (lexdb != null)
+			pool.add(lexdb);
+	}
+
 	// need more constructors for general case...
 
 	/***************** methods to set global parameters ****************************/
@@ -143,7 +260,149 @@ public class NIHDBLexicon extends Lexicon {
 	 *            - if true, standard inflections are kept
 	 */
 	public void setKeepStandardInflections(boolean keepStandardInflections) {
-		this.keepStandardInflections = keepStandardInflections;
+		checkWritable();
+		if (this.keepStandardInflections != keepStandardInflections) {
+			this.keepStandardInflections = keepStandardInflections;
+			// cached words were built with the old setting
+			cache.clear();
+		}
+	}
+
+	/**
+	 * set how many lookups are cached
+	 * 
+	 * @param size
+	 *            - maximum number of lookups, 0 to cache nothing
+	 */
+	public void setCacheSize(int size) {
+		checkWritable();
+		cache.setMaxSize(size);
+	}
+
+	/**
+	 * @return maximum number of lookups which are cached
+	 */
+	public int getCacheSize() {
+		return cache.getMaxSize();
+	}
+
+	/**
+	 * forget all cached lookups
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getCacheHits() {
+		return cache.getHits();
+	}
+
+	/**
+	 * @return number of lookups which went to the DB
+	 */
+	public long getCacheMisses() {
+		return cache.getMisses();
+	}
+
+	/**
+	 * @return number of lookups dropped from the cache to make room
+	 */
+	public long getCacheEvictions() {
+		return cache.getEvictions();
+	}
+
+	/**
+	 * Set Bloom filters over the base forms, variants and IDs in the DB. A
+	 * lookup of a form which the filter says is not in the DB (for example by
+	 * <code>hasWord</code> or <code>lookupWord</code>) then returns no words
+	 * without querying the DB. The filter must have been built from this DB,
+	 * see {@link #buildFilter(double)}
+	 * 
+	 * @param filter
+	 *            - <code>null</code> to query the DB for every form
+	 */
+	public void setFilter(LexiconFilter filter) {
+		checkWritable();
+		this.filter = filter;
+	}
+
+	/**
+	 * @return filter set by {@link #setFilter(LexiconFilter)}, or
+	 *         <code>null</code>
+	 */
+	public LexiconFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Build Bloom filters over every record in the DB: the base form, the ID,
+	 * and (as variants) every form which an ID or variant query can find. This
+	 * reads the whole DB, so is best done once, when the lexicon is exported,
+	 * and the filter saved with {@link LexiconFilter#write(java.io.File)}
+	 * 
+	 * @param falsePositiveRate
+	 *            - see {@link LexiconFilter}
+	 * @return the filter, or <code>null</code> if the DB cannot be read
+	 */
+	public LexiconFilter buildFilter(double falsePositiveRate) {
+		Set<String> baseForms = new HashSet<String>();
+		Set<String> variants = new HashSet<String>();
+		Set<String> ids = new HashSet<String>();
+
+		LexAccessApi lexdb = null;
+		try {
+			lexdb = borrow();
+			List<String> recordIds = new ArrayList<String>();
+			Statement statement = lexdb.GetConnection().createStatement();
+			ResultSet results = statement
+					.executeQuery("SELECT DISTINCT eui FROM LEX_RECORD WHERE lastAction <> 3");
+			while (results.next())
+				recordIds.add(results.getString(1));
+			results.close();
+			statement.close();
+
+			for (String recordId : recordIds) {
+				for (LexRecord record : lexdb.GetLexRecords(recordId)
+						.GetJavaObjs()) {
+					baseForms.add(record.GetBase());
+					ids.add(record.GetEui());
+					variants.add(record.GetBase());
+					variants.add(record.GetEui());
+					for (InflVar inflection : record
+							.GetInflVarsAndAgreements().GetInflValues())
+						variants.add(inflection.GetVar());
+					Vector<String> spellingVars = record.GetSpellingVars();
+					if (spellingVars != null)
+						variants.addAll(spellingVars);
+				}
+			}
+		} catch (SQLException ex) {
+			System.out.println("Lexical DB error: " + ex.toString());
+			return null;
+		} finally {
+			release(lexdb);
+		}
+		return new LexiconFilter(baseForms, variants, ids, falsePositiveRate);
+	}
+
+	/**
+	 * @param kind
+	 *            - LOOKUP_BASE, LOOKUP_ID or LOOKUP_VARIANT
+	 * @param form
+	 * @return <code>false</code> if the filter says no word can match
+	 */
+	private boolean mightHave(String kind, String form) {
+		LexiconFilter currentFilter = filter;
+		if (currentFilter == null)
+			return true;
+		if (LOOKUP_BASE.equals(kind))
+			return currentFilter.mightHaveBase(form);
+		if (LOOKUP_ID.equals(kind))
+			return currentFilter.mightHaveID(form);
+		return currentFilter.mightHaveVariant(form);
 	}
 
 	/****************************************************************************/
@@ -157,17 +416,8 @@ public class NIHDBLexicon extends Lexicon {
 	 * simplenlg.features.LexicalCategory)
 	 */
 	@Override
-	public synchronized List<WordElement> getWords(String baseForm, LexicalCategory category) {
-		// get words from DB
-		try {
-			LexAccessApiResult lexResult = lexdb.GetLexRecordsByBase(baseForm,
-					LexAccessApi.B_EXACT);			
-			return getWordsFromLexResult(category, lexResult);
-		} catch (SQLException ex) {
-			System.out.println("Lexical DB error: " + ex.toString());
-			// probably should thrown an exception
-		}
-		return null;
+	public List<WordElement> getWords(String baseForm, LexicalCategory category) {
+		return lookup(LOOKUP_BASE, baseForm, category);
 	}
 
 	/*
@@ -176,16 +426,8 @@ public class NIHDBLexicon extends Lexicon {
 	 * @see simplenlg.lexicon.Lexicon#getWordsByID(java.lang.String)
 	 */
 	@Override
-	public synchronized List<WordElement> getWordsByID(String id) {
-		// get words from DB
-		try {
-			LexAccessApiResult lexResult = lexdb.GetLexRecords(id);
-			return getWordsFromLexResult(LexicalCategory.ANY, lexResult);
-		} catch (SQLException ex) {
-			System.out.println("Lexical DB error: " + ex.toString());
-			// probably should thrown an exception
-		}
-		return null;
+	public List<WordElement> getWordsByID(String id) {
+		return lookup(LOOKUP_ID, id, LexicalCategory.ANY);
 	}
 
 	/*
@@ -195,19 +437,190 @@ public class NIHDBLexicon extends Lexicon {
 	 * simplenlg.features.LexicalCategory)
 	 */
 	@Override
-	public synchronized List<WordElement> getWordsFromVariant(String variant,
+	public List<WordElement> getWordsFromVariant(String variant,
+			LexicalCategory category) {
+		return lookup(LOOKUP_VARIANT, variant, category);
+	}
+
+	/**
+	 * Looks up all the words on one DB connection, and queries the DB once per
+	 * form rather than once per lookup: the words of every category are
+	 * fetched for a form and then filtered by category.
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#lookupWords(java.util.Collection)
+	 */
+	@Override
+	public Map<WordKey, WordElement> lookupWords(Collection<WordKey> keys) {
+		Map<WordKey, WordElement> words = new LinkedHashMap<WordKey, WordElement>();
+		for (WordKey key : keys)
+			recordLookup(key.getBaseForm(), key.getCategory());
+		// words of all categories, by lookup kind and form
+		Map<String, List<WordElement>> fetched = new HashMap<String, List<WordElement>>();
+
+		LexAccessApi lexdb = null;
+		try {
+			lexdb = borrow();
+			for (WordKey key : keys) {
+				if (words.containsKey(key))
+					continue;
+				String form = key.getBaseForm();
+				LexicalCategory category = key.getCategory();
+
+				// same order as lookupWord: base form, variant, ID
+				List<WordElement> matches = filter(lookup(LOOKUP_BASE, form,
+						lexdb, fetched), category);
+				if (matches.isEmpty())
+					matches = filter(lookup(LOOKUP_VARIANT, form, lexdb,
+							fetched), category);
+				if (!matches.isEmpty()) {
+					words.put(key, new WordElement(selectMatchingWord(matches,
+							form)));
+					continue;
+				}
+				// IDs are found by the same query as variants
+				matches = lookup(LOOKUP_VARIANT, form, lexdb, fetched);
+				words.put(key, matches.isEmpty() ? createWord(form, category)
+						: new WordElement(matches.get(0)));
+			}
+		} catch (SQLException ex) {
+			System.out.println("Lexical DB error: " + ex.toString());
+			// probably should thrown an exception
+		} finally {
+			release(lexdb);
+		}
+
+		// anything which could not be looked up gets a default word
+		for (WordKey key : keys) {
+			if (!words.containsKey(key))
+				words.put(key, createWord(key.getBaseForm(), key.getCategory()));
+		}
+		return words;
+	}
+
+	/**
+	 * look up words, in the cache or else in the DB
+	 * 
+	 * @param kind
+	 *            - LOOKUP_BASE, LOOKUP_ID or LOOKUP_VARIANT
+	 * @param form
+	 * @param category
+	 * @return copies of the matching words, or <code>null</code> if the DB
+	 *         cannot be read
+	 */
+	private List<WordElement> lookup(String kind, String form,
 			LexicalCategory category) {
+		if (!mightHave(kind, form))
+			return new ArrayList<WordElement>();
+		String key = kind + ":" + category + ":" + form;
+		List<WordElement> cached = cache.get(key);
+		if (cached != null)
+			return copyWords(cached);
+
 		// get words from DB
+		long generation = cache.getGeneration();
+		LexAccessApi lexdb = null;
 		try {
-			LexAccessApiResult lexResult = lexdb.GetLexRecords(variant);
-			return getWordsFromLexResult(category, lexResult);
+			lexdb = borrow();
+			List<WordElement> words = query(kind, form, category, lexdb);
+			cache.put(key, words, generation);
+			return copyWords(words);
 		} catch (SQLException ex) {
 			System.out.println("Lexical DB error: " + ex.toString());
 			// probably should thrown an exception
+		} finally {
+			release(lexdb);
 		}
 		return null;
 	}
 
+	/**
+	 * batch lookup: look up the words of all categories, in the words already
+	 * fetched for this batch, the cache or else in the DB
+	 * 
+	 * @param kind
+	 *            - LOOKUP_BASE or LOOKUP_VARIANT
+	 * @param form
+	 * @param lexdb
+	 *            - lexical access object held for the batch
+	 * @param fetched
+	 *            - words already fetched for the batch
+	 * @return the cached words, which must not be changed
+	 * @throws SQLException
+	 */
+	private List<WordElement> lookup(String kind, String form,
+			LexAccessApi lexdb, Map<String, List<WordElement>> fetched)
+			throws SQLException {
+		if (!mightHave(kind, form))
+			return Collections.emptyList();
+		String key = kind + ":" + LexicalCategory.ANY + ":" + form;
+		List<WordElement> words = fetched.get(key);
+		if (words == null) {
+			words = cache.get(key);
+			if (words == null) {
+				long generation = cache.getGeneration();
+				words = query(kind, form, LexicalCategory.ANY, lexdb);
+				cache.put(key, words, generation);
+			}
+			fetched.put(key, words);
+		}
+		return words;
+	}
+
+	/**
+	 * query the DB
+	 * 
+	 * @param kind
+	 *            - LOOKUP_BASE, LOOKUP_ID or LOOKUP_VARIANT
+	 * @param form
+	 * @param category
+	 * @param lexdb
+	 * @return matching words
+	 * @throws SQLException
+	 */
+	private List<WordElement> query(String kind, String form,
+			LexicalCategory category, LexAccessApi lexdb) throws SQLException {
+		LexAccessApiResult lexResult;
+		if (LOOKUP_BASE.equals(kind))
+			lexResult = lexdb.GetLexRecordsByBase(form, LexAccessApi.B_EXACT);
+		else
+			// IDs and variants are both found by GetLexRecords
+			lexResult = lexdb.GetLexRecords(form);
+		List<WordElement> words = getWordsFromLexResult(category, lexResult,
+				lexdb);
+		// the words are cached, and handed out as copies
+		for (WordElement word : words)
+			word.setShared();
+		return words;
+	}
+
+	/**
+	 * @param words
+	 * @param category
+	 * @return the words of a category (all of them for ANY)
+	 */
+	private static List<WordElement> filter(List<WordElement> words,
+			LexicalCategory category) {
+		if (category == LexicalCategory.ANY)
+			return words;
+		List<WordElement> matches = new ArrayList<WordElement>();
+		for (WordElement word : words)
+			if (word.getCategory() == category)
+				matches.add(word);
+		return matches;
+	}
+
+	/**
+	 * @param words
+	 * @return copy-on-write views of words, so callers cannot change the
+	 *         cached words
+	 */
+	private static List<WordElement> copyWords(List<WordElement> words) {
+		List<WordElement> copies = new ArrayList<WordElement>(words.size());
+		for (WordElement word : words)
+			copies.add(new WordElement(word));
+		return copies;
+	}
+
 	/****************************************************************************/
 	// other methods
 	/****************************************************************************/
@@ -219,7 +632,8 @@ public class NIHDBLexicon extends Lexicon {
 	 */
 	@Override
 	public void close() {
-		if (lexdb != null)
+		checkWritable();
+		for (LexAccessApi lexdb : lexdbs)
 			lexdb.CleanUp();
 	}
 
@@ -228,10 +642,14 @@ public class NIHDBLexicon extends Lexicon {
 	 * params and inflections Should do more in the future!
 	 * 
 	 * @param record
+	 * @param lexdb
+	 *            - lexical access object used to look up related words
 	 * @return
+	 * @throws SQLException
 	 */
 	@SuppressWarnings("incomplete-switch")
-	private WordElement makeWord(LexRecord record) {
+	private WordElement makeWord(LexRecord record, LexAccessApi lexdb)
+			throws SQLException {
 		// get basic data
 		String baseForm = record.GetBase();		
 		LexicalCategory category = getSimplenlgCategory(record);
@@ -296,7 +714,7 @@ public class NIHDBLexicon extends Lexicon {
 		// }
 
 		// add acronym info
-		addAcronymInfo(wordElement, record);
+		addAcronymInfo(wordElement, record, lexdb);
 
 		// now add spelling variants
 		addSpellingVariants(wordElement, record);
@@ -311,10 +729,14 @@ public class NIHDBLexicon extends Lexicon {
 	 *            - desired category (eg, NOUN) (this filters list)
 	 * @param lexResult
 	 *            - the LexAccessApiResult
+	 * @param lexdb
+	 *            - lexical access object used to look up related words
 	 * @return list of WordElement
+	 * @throws SQLException
 	 */
 	private List<WordElement> getWordsFromLexResult(LexicalCategory category,
-			LexAccessApiResult lexResult) {
+			LexAccessApiResult lexResult, LexAccessApi lexdb)
+			throws SQLException {
 		List<LexRecord> records = lexResult.GetJavaObjs();
 
 		// set up array of words to return
@@ -325,7 +747,7 @@ public class NIHDBLexicon extends Lexicon {
 
 			if (category == LexicalCategory.ANY
 					|| category == getSimplenlgCategory(record))
-				wordElements.add(makeWord(record));
+				wordElements.add(makeWord(record, lexdb));
 		}
 		return wordElements;
 	}
@@ -662,8 +1084,14 @@ public class NIHDBLexicon extends Lexicon {
 	 * 
 	 * @param wordElement
 	 * @param record
+	 * @param lexdb
+	 *            - lexical access object used to look up the full forms. This
+	 *            is the one the caller already holds, so a lookup never needs
+	 *            a second connection from the pool
+	 * @throws SQLException
 	 */
-	private void addAcronymInfo(WordElement wordElement, LexRecord record) {
+	private void addAcronymInfo(WordElement wordElement, LexRecord record,
+			LexAccessApi lexdb) throws SQLException {
 		// NB: the acronyms are actually the full forms of which the word is an
 		// acronym
 		List<String> acronyms = record.GetAcronyms();
@@ -680,7 +1108,11 @@ public class NIHDBLexicon extends Lexicon {
 					String acronymID = fullForm.substring(
 							fullForm.indexOf("|") + 1, fullForm.length());
 					// create the full form element
-					WordElement fullFormWE = this.getWordByID(acronymID);
+					List<WordElement> fullForms = getWordsFromLexResult(
+							LexicalCategory.ANY, lexdb.GetLexRecords(acronymID),
+							lexdb);
+					WordElement fullFormWE = fullForms.isEmpty() ? createWord(acronymID)
+							: fullForms.get(0);
 
 					if (fullForm != null) {
 						// add as full form of this acronym
@@ -0,0 +1,326 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import simplenlg.framework.LexicalCategory;
+import simplenlg.framework.WordElement;
+
+/**
+ * A small lexicon of additions and overrides on top of a shared base
+ * lexicon, for example the domain terms of one customer on top of the
+ * default lexicon. Only the added words are stored, so many overlays can
+ * share one base.
+ * 
+ * <P>
+ * A word in the overlay overrides the base words with the same form (base
+ * form, variant or ID) and category; base words of other categories are still
+ * found. The base lexicon is never changed, and is not closed when the
+ * overlay is closed.
+ */
+public class OverlayLexicon extends Lexicon {
+
+	private static final WordElement[] NO_WORDS = new WordElement[0];
+
+	/* the shared lexicon */
+	private final Lexicon base;
+
+	/* added words, by base form, variant and ID */
+	private final ConcurrentMap<String, WordElement[]> indexByBase = new ConcurrentHashMap<String, WordElement[]>();
+	private final ConcurrentMap<String, WordElement[]> indexByVariant = new ConcurrentHashMap<String, WordElement[]>();
+	private final ConcurrentMap<String, WordElement> indexByID = new ConcurrentHashMap<String, WordElement>();
+
+	/**********************************************************************/
+	// constructors
+	/**********************************************************************/
+
+	/**
+	 * create an empty overlay
+	 * 
+	 * @param base
+	 *            - shared lexicon, which is searched for words which are not
+	 *            overridden
+	 */
+	public OverlayLexicon(Lexicon base) {
+		super();
+		this.base = base;
+		setLanguage(base.getLanguage());
+		// words added to the base lexicon would not clear this lexicon's
+		// cache, so it does not remember words it did not find
+		setLookupCacheSize(0);
+	}
+
+	/**
+	 * @return the shared lexicon
+	 */
+	public Lexicon getBase() {
+		return base;
+	}
+
+	/**********************************************************************/
+	// routines to add words
+	/**********************************************************************/
+
+	/**
+	 * add a word to the overlay. Its variants are indexed as the base lexicon
+	 * would index them (if it is an XML lexicon)
+	 * 
+	 * @param word
+	 */
+	public void addWord(WordElement word) {
+		Set<String> variants = base instanceof AbstractXMLLexicon ? ((AbstractXMLLexicon) base)
+				.getVariants(word)
+				: Collections.singleton(word.getBaseForm());
+		addWord(word, variants.toArray(new String[variants.size()]));
+	}
+
+	/**
+	 * add a word to the overlay, with the given variants
+	 * 
+	 * @param word
+	 * @param variants
+	 *            - forms (including the base form) under which the word is
+	 *            found by <code>getWordsFromVariant</code>
+	 */
+	public synchronized void addWord(WordElement word, String... variants) {
+		checkWritable();
+		word.setShared();
+		if (word.getBaseForm() != null)
+			add(indexByBase, word.getBaseForm(), word);
+		for (String variant : variants)
+			add(indexByVariant, variant, word);
+		if (word.getId() != null)
+			indexByID.put(word.getId(), word);
+		clearLookupCache();
+	}
+
+	/**
+	 * remove a word which was added to the overlay, so the base words it
+	 * overrode are found again
+	 * 
+	 * @param word
+	 */
+	public synchronized void removeWord(WordElement word) {
+		checkWritable();
+		remove(indexByBase, word);
+		remove(indexByVariant, word);
+		if (word.getId() != null && indexByID.get(word.getId()) == word)
+			indexByID.remove(word.getId());
+		clearLookupCache();
+	}
+
+	/**
+	 * @return number of words added to the overlay
+	 */
+	public int size() {
+		int size = 0;
+		for (WordElement[] words : indexByBase.values())
+			size += words.length;
+		return size;
+	}
+
+	/* entries are replaced rather than changed, so readers need no lock */
+	private static void add(ConcurrentMap<String, WordElement[]> index,
+			String key, WordElement word) {
+		WordElement[] words = index.get(key);
+		if (words == null) {
+			index.put(key, new WordElement[] { word });
+		} else {
+			words = Arrays.copyOf(words, words.length + 1);
+			words[words.length - 1] = word;
+			index.put(key, words);
+		}
+	}
+
+	private static void remove(ConcurrentMap<String, WordElement[]> index,
+			WordElement word) {
+		for (String key : new ArrayList<String>(index.keySet())) {
+			List<WordElement> words = new ArrayList<WordElement>(Arrays
+					.asList(index.get(key)));
+			if (words.remove(word)) {
+				if (words.isEmpty())
+					index.remove(key);
+				else
+					index.put(key, words.toArray(new WordElement[words.size()]));
+			}
+		}
+	}
+
+	/**********************************************************************/
+	// main methods
+	/**********************************************************************/
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#getWords(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public List<WordElement> getWords(String baseForm, LexicalCategory category) {
+		WordElement[] added = get(indexByBase, baseForm);
+		return merge(added, category, overrides(added, category) ? null
+				: base.getWords(baseForm, category));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#getWordsByID(java.lang.String)
+	 */
+	@Override
+	public List<WordElement> getWordsByID(String id) {
+		WordElement word = id == null ? null : indexByID.get(id);
+		if (word == null)
+			return base.getWordsByID(id);
+		List<WordElement> result = new ArrayList<WordElement>(1);
+		result.add(new WordElement(word));
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#getWordsFromVariant(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public List<WordElement> getWordsFromVariant(String variant,
+			LexicalCategory category) {
+		WordElement[] added = get(indexByVariant, variant);
+		return merge(added, category, overrides(added, category) ? null
+				: base.getWordsFromVariant(variant, category));
+	}
+
+	private static WordElement[] get(ConcurrentMap<String, WordElement[]> index,
+			String key) {
+		WordElement[] words = key == null ? null : index.get(key);
+		return words == null ? NO_WORDS : words;
+	}
+
+	/**
+	 * @param added
+	 * @param category
+	 * @return true if the base lexicon need not be searched, because an added
+	 *         word has the category asked for
+	 */
+	private static boolean overrides(WordElement[] added,
+			LexicalCategory category) {
+		if (category == LexicalCategory.ANY)
+			return false;
+		for (WordElement word : added)
+			if (word.getCategory() == category)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param added
+	 *            - matching words in the overlay
+	 * @param category
+	 * @param fromBase
+	 *            - matching words in the base lexicon, may be
+	 *            <code>null</code>
+	 * @return copies of the added words of the category, followed by the base
+	 *         words whose category is not overridden
+	 */
+	private static List<WordElement> merge(WordElement[] added,
+			LexicalCategory category, List<WordElement> fromBase) {
+		if (added.length == 0 && fromBase != null)
+			return fromBase;
+		List<WordElement> result = new ArrayList<WordElement>();
+		for (WordElement word : added)
+			if (category == LexicalCategory.ANY
+					|| word.getCategory() == category)
+				result.add(new WordElement(word));
+		if (fromBase != null) {
+			for (WordElement word : fromBase) {
+				boolean overridden = false;
+				for (WordElement addedWord : added)
+					if (addedWord.getCategory() == word.getCategory())
+						overridden = true;
+				if (!overridden)
+					result.add(word);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#addStatistics(simplenlg.lexicon.
+	 * LexiconStatistics, simplenlg.lexicon.MemoryEstimator)
+	 */
+	@Override
+	void addStatistics(LexiconStatistics statistics, MemoryEstimator estimator) {
+		// only the added words; the base lexicon is shared
+		int words = 0;
+		long wordBytes = 0;
+		for (WordElement[] keyWords : indexByBase.values()) {
+			for (WordElement word : keyWords) {
+				words++;
+				wordBytes += estimator.word(word);
+				if (word.getCategory() instanceof LexicalCategory)
+					statistics.addWords((LexicalCategory) word.getCategory(), 1);
+			}
+		}
+		statistics.addIndex(LexiconStatistics.WORDS, words, words, wordBytes);
+		addIndexStatistics(statistics, estimator,
+				LexiconStatistics.INDEX_BY_BASE, indexByBase);
+		addIndexStatistics(statistics, estimator,
+				LexiconStatistics.INDEX_BY_VARIANT, indexByVariant);
+		statistics.addIndex(LexiconStatistics.INDEX_BY_ID, indexByID.size(),
+				indexByID.size(), estimator.idIndex(indexByID));
+	}
+
+	private static void addIndexStatistics(LexiconStatistics statistics,
+			MemoryEstimator estimator, String name,
+			ConcurrentMap<String, WordElement[]> index) {
+		int entries = 0;
+		long bytes = MemoryEstimator.hashMap(index.size());
+		for (Map.Entry<String, WordElement[]> entry : index.entrySet()) {
+			entries += entry.getValue().length;
+			bytes += estimator.string(entry.getKey())
+					+ MemoryEstimator.array(entry.getValue().length,
+							MemoryEstimator.REFERENCE);
+		}
+		statistics.addIndex(name, index.size(), entries, bytes);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#close()
+	 */
+	@Override
+	public void close() {
+		checkWritable();
+		// the base lexicon is shared, so it is not closed
+	}
+
+}
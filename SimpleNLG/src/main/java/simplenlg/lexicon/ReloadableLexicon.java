@@ -0,0 +1,401 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import simplenlg.framework.LexicalCategory;
+import simplenlg.framework.WordElement;
+import simplenlg.language.EnLanguage;
+
+/**
+ * A lexicon which can be replaced by a new version while it is in use, for
+ * example to pick up edits to a lexicon file without restarting.
+ * 
+ * <P>
+ * Each lookup is answered by the version which is current when it starts.
+ * A task which must see one version throughout (such as realising a
+ * document) should {@link #acquire()} a version, use
+ * {@link Version#getLexicon()} for the whole task, and then
+ * {@link Version#release()} it. Readers never wait: a new version is loaded
+ * (by {@link #reload()} or {@link #reloadInBackground()}) before it is
+ * swapped in, and an old version is only closed when the last task using it
+ * releases it.
+ */
+public class ReloadableLexicon extends Lexicon {
+
+	// threads for loading new versions
+	private static final ExecutorService RELOAD_EXECUTOR = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "lexicon-reload");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/* loads new versions, may be null */
+	private final LexiconLoader loader;
+
+	/* the current version */
+	private final AtomicReference<Version> current = new AtomicReference<Version>();
+
+	/* number of the last version swapped in */
+	private final AtomicInteger versions = new AtomicInteger();
+
+	/* true once this lexicon has been closed */
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	/**
+	 * One version of the lexicon. A version stays open while it is current or
+	 * acquired by a task
+	 */
+	public static class Version {
+		private final Lexicon lexicon;
+		private final int number;
+		// tasks using this version, plus one while it is current
+		private final AtomicInteger users = new AtomicInteger(1);
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+
+		private Version(Lexicon lexicon, int number) {
+			this.lexicon = lexicon;
+			this.number = number;
+		}
+
+		/**
+		 * @return the lexicon of this version
+		 */
+		public Lexicon getLexicon() {
+			return lexicon;
+		}
+
+		/**
+		 * @return the version number; the first version is 1
+		 */
+		public int getNumber() {
+			return number;
+		}
+
+		/**
+		 * stop using this version. Must be called once for each
+		 * {@link ReloadableLexicon#acquire()}
+		 */
+		public void release() {
+			// shared lexicons, eg from the registry, are not ours to close
+			if (users.decrementAndGet() == 0 && closed.compareAndSet(false, true)
+					&& !lexicon.isReadOnly())
+				lexicon.close();
+		}
+
+		/**
+		 * @return true if this version has been closed
+		 */
+		public boolean isClosed() {
+			return closed.get();
+		}
+	}
+
+	/**********************************************************************/
+	// constructors
+	/**********************************************************************/
+
+	/**
+	 * create a reloadable lexicon, and load its first version
+	 * 
+	 * @param loader
+	 *            - loads each version of the lexicon
+	 */
+	public ReloadableLexicon(LexiconLoader loader) {
+		this(loader, loader.load());
+	}
+
+	/**
+	 * create a reloadable lexicon whose versions are set with
+	 * {@link #swap(Lexicon)}
+	 * 
+	 * @param lexicon
+	 *            - the first version
+	 */
+	public ReloadableLexicon(Lexicon lexicon) {
+		this(null, lexicon);
+	}
+
+	private ReloadableLexicon(LexiconLoader loader, Lexicon lexicon) {
+		super();
+		this.loader = loader;
+		// each version has its own lookup cache
+		setLookupCacheSize(0);
+		swap(lexicon);
+	}
+
+	/**********************************************************************/
+	// versions
+	/**********************************************************************/
+
+	/**
+	 * start using the current version. The caller must
+	 * {@link Version#release()} it when finished
+	 * 
+	 * @return the current version
+	 */
+	public Version acquire() {
+		while (true) {
+			Version version = current.get();
+			version.users.incrementAndGet();
+			// if it was swapped out meanwhile it may be closed, so try again
+			if (current.get() == version)
+				return version;
+			version.release();
+		}
+	}
+
+	/**
+	 * @return the lexicon of the current version. It may be replaced at any
+	 *         time, so tasks which need one version throughout should use
+	 *         {@link #acquire()}
+	 */
+	public Lexicon getLexicon() {
+		return current.get().getLexicon();
+	}
+
+	/**
+	 * @return the number of the current version
+	 */
+	public int getVersion() {
+		return current.get().getNumber();
+	}
+
+	/**
+	 * make a lexicon the current version. The old version is closed when the
+	 * last task using it releases it. If lookups are being recorded in a warm
+	 * set, the new version preloads its words first
+	 * 
+	 * @param lexicon
+	 *            - the new version
+	 * @return the number of the new version, or the current one if the
+	 *         lexicon is already current
+	 */
+	public int swap(Lexicon lexicon) {
+		checkWritable();
+		// swapping in the current lexicon again would close it
+		Version now = current.get();
+		if (now != null && now.getLexicon() == lexicon)
+			return now.getNumber();
+		// a new version starts with the words in use by the old one
+		WarmSet currentWarmSet = getWarmSet();
+		if (currentWarmSet != null)
+			lexicon.preload(currentWarmSet);
+		Version version = new Version(lexicon, versions.incrementAndGet());
+		Version old = current.getAndSet(version);
+		if (old != null)
+			old.release();
+		return version.getNumber();
+	}
+
+	/**
+	 * load a new version with the loader, and make it current. Lookups carry
+	 * on against the old version while it loads
+	 * 
+	 * @return the number of the new version, or the current one if there is
+	 *         no loader or the load failed
+	 */
+	public int reload() {
+		checkWritable();
+		if (loader == null) {
+			System.out.println("Lexicon reload error: no loader");
+			return getVersion();
+		}
+		Lexicon lexicon;
+		try {
+			lexicon = loader.load();
+		} catch (RuntimeException ex) {
+			System.out.println("Lexicon reload error: " + ex.toString());
+			return getVersion();
+		}
+		if (lexicon == null)
+			return getVersion();
+		return swap(lexicon);
+	}
+
+	/**
+	 * as {@link #reload()}, but on a background thread
+	 * 
+	 * @return the number of the new version, when it has been swapped in
+	 */
+	public Future<Integer> reloadInBackground() {
+		return RELOAD_EXECUTOR.submit(new Callable<Integer>() {
+			public Integer call() {
+				return reload();
+			}
+		});
+	}
+
+	/**********************************************************************/
+	// lookups, each against one version
+	/**********************************************************************/
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#getLanguage()
+	 */
+	@Override
+	public EnLanguage getLanguage() {
+		return getLexicon().getLanguage();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#getWords(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public List<WordElement> getWords(String baseForm, LexicalCategory category) {
+		Version version = acquire();
+		try {
+			return version.getLexicon().getWords(baseForm, category);
+		} finally {
+			version.release();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#getWordsByID(java.lang.String)
+	 */
+	@Override
+	public List<WordElement> getWordsByID(String id) {
+		Version version = acquire();
+		try {
+			return version.getLexicon().getWordsByID(id);
+		} finally {
+			version.release();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#getWordsFromVariant(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public List<WordElement> getWordsFromVariant(String variant,
+			LexicalCategory category) {
+		Version version = acquire();
+		try {
+			return version.getLexicon().getWordsFromVariant(variant, category);
+		} finally {
+			version.release();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#lookupWord(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public WordElement lookupWord(String baseForm, LexicalCategory category) {
+		recordLookup(baseForm, category);
+		Version version = acquire();
+		try {
+			return version.getLexicon().lookupWord(baseForm, category);
+		} finally {
+			version.release();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#resolveWord(java.lang.String,
+	 * simplenlg.framework.LexicalCategory)
+	 */
+	@Override
+	public WordElement resolveWord(String baseForm, LexicalCategory category) {
+		Version version = acquire();
+		try {
+			return version.getLexicon().resolveWord(baseForm, category);
+		} finally {
+			version.release();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#lookupWords(java.util.Collection)
+	 */
+	@Override
+	public Map<WordKey, WordElement> lookupWords(Collection<WordKey> keys) {
+		for (WordKey key : keys)
+			recordLookup(key.getBaseForm(), key.getCategory());
+		Version version = acquire();
+		try {
+			return version.getLexicon().lookupWords(keys);
+		} finally {
+			version.release();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#addStatistics(simplenlg.lexicon.
+	 * LexiconStatistics, simplenlg.lexicon.MemoryEstimator)
+	 */
+	@Override
+	void addStatistics(LexiconStatistics statistics, MemoryEstimator estimator) {
+		// only the current version; old versions are closed when released
+		Version version = acquire();
+		try {
+			version.getLexicon().addStatistics(statistics, estimator);
+		} finally {
+			version.release();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see simplenlg.lexicon.Lexicon#close()
+	 */
+	@Override
+	public void close() {
+		checkWritable();
+		// the current version is closed once no task is using it
+		if (closed.compareAndSet(false, true))
+			current.get().release();
+	}
+
+}
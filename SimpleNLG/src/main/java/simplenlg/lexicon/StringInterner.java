@@ -0,0 +1,82 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares equal strings read from a lexicon file, so that feature names,
+ * feature values and base forms which occur in many words are held in memory
+ * only once. Unlike <code>String.intern()</code>, the pool belongs to one
+ * lexicon and can be dropped once the lexicon is loaded. It is safe to use
+ * from several threads.
+ */
+class StringInterner {
+
+	// approximate size of a String and its char array, less the characters
+	private static final int STRING_OVERHEAD = 40;
+
+	private ConcurrentMap<String, String> pool = new ConcurrentHashMap<String, String>();
+	private AtomicLong duplicates = new AtomicLong();
+	private AtomicLong bytesSaved = new AtomicLong();
+
+	/**
+	 * @param value
+	 *            - string, may be <code>null</code>
+	 * @return a string equal to <code>value</code>, which is the same object
+	 *         for every equal string passed to this pool
+	 */
+	String intern(String value) {
+		if (value == null)
+			return null;
+
+		String shared = pool.putIfAbsent(value, value);
+		if (shared == null)
+			return value;
+
+		duplicates.incrementAndGet();
+		bytesSaved.addAndGet(STRING_OVERHEAD + 2 * value.length());
+		return shared;
+	}
+
+	/**
+	 * forget the strings in the pool. Strings already returned stay shared,
+	 * and the counts are kept
+	 */
+	void clear() {
+		pool.clear();
+	}
+
+	/**
+	 * @return number of strings which were replaced by an equal string
+	 */
+	long getDuplicates() {
+		return duplicates.get();
+	}
+
+	/**
+	 * @return estimate of the heap saved by sharing strings, in bytes
+	 */
+	long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import simplenlg.framework.LexicalCategory;
+
+/**
+ * The words a lexicon has been asked for, in the order they were first
+ * looked up. A warm set is recorded by a running lexicon (see
+ * {@link Lexicon#setWarmSet(WarmSet)}), saved with {@link #write(File)}, and
+ * read back when the next process starts, which can then look up exactly those
+ * words before taking traffic (see {@link Lexicon#preload(WarmSet)}), rather
+ * than loading the whole lexicon or paying for each first lookup.
+ * 
+ * <P>
+ * The file has one word per line: the category, a tab and the form.
+ */
+public class WarmSet {
+
+	/** maximum number of words recorded if none is given */
+	public static final int DEFAULT_MAX_SIZE = 100000;
+
+	private final int maxSize;
+	private final Set<WordKey> keys = new LinkedHashSet<WordKey>();
+
+	/**
+	 * Create an empty warm set holding up to {@link #DEFAULT_MAX_SIZE} words
+	 */
+	public WarmSet() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Create an empty warm set
+	 * 
+	 * @param maxSize
+	 *            - maximum number of words; words looked up once the set is
+	 *            full are not recorded
+	 */
+	public WarmSet(int maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+	}
+
+	/**
+	 * record that a word was looked up
+	 * 
+	 * @param baseForm
+	 * @param category
+	 */
+	public void record(String baseForm, LexicalCategory category) {
+		// forms on several lines cannot be written out
+		if (baseForm == null || baseForm.indexOf('\n') >= 0
+				|| baseForm.indexOf('\r') >= 0)
+			return;
+		WordKey key = new WordKey(baseForm, category);
+		synchronized (keys) {
+			if (keys.size() < maxSize)
+				keys.add(key);
+		}
+	}
+
+	/**
+	 * @return the recorded words, in the order they were first looked up
+	 */
+	public List<WordKey> getKeys() {
+		synchronized (keys) {
+			return new ArrayList<WordKey>(keys);
+		}
+	}
+
+	/**
+	 * @return number of recorded words
+	 */
+	public int size() {
+		synchronized (keys) {
+			return keys.size();
+		}
+	}
+
+	/**
+	 * Save the recorded words to a file
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			for (WordKey key : getKeys()) {
+				out.write(key.getCategory().name());
+				out.write('\t');
+				out.write(key.getBaseForm());
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Read words saved by {@link #write(File)}. Lines which are not a category
+	 * and a form are skipped
+	 * 
+	 * @param file
+	 * @return warm set holding the words, which records further lookups
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static WarmSet read(File file) throws IOException {
+		WarmSet warmSet = new WarmSet();
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab < 0)
+					continue;
+				try {
+					warmSet.record(line.substring(tab + 1), LexicalCategory
+							.valueOf(line.substring(0, tab)));
+				} catch (IllegalArgumentException ex) {
+					System.out.println("Warm set error: unknown category in "
+							+ line);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return warmSet;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import simplenlg.framework.LexicalCategory;
+
+/**
+ * A base form and category to be looked up in a lexicon, used to look up
+ * several words in one call with {@link Lexicon#lookupWords}.
+ */
+public final class WordKey {
+
+	private final String baseForm;
+	private final LexicalCategory category;
+
+	/**
+	 * @param baseForm
+	 *            - base form of word, eg "be" or "dog"
+	 * @param category
+	 *            - syntactic category of word (<code>null</code> or ANY for
+	 *            unknown)
+	 */
+	public WordKey(String baseForm, LexicalCategory category) {
+		this.baseForm = baseForm;
+		this.category = category == null ? LexicalCategory.ANY : category;
+	}
+
+	/**
+	 * @param baseForm
+	 *            - base form of word, eg "be" or "dog"
+	 */
+	public WordKey(String baseForm) {
+		this(baseForm, LexicalCategory.ANY);
+	}
+
+	public String getBaseForm() {
+		return baseForm;
+	}
+
+	public LexicalCategory getCategory() {
+		return category;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof WordKey))
+			return false;
+		WordKey other = (WordKey) o;
+		return category == other.category
+				&& (baseForm == null ? other.baseForm == null : baseForm
+						.equals(other.baseForm));
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * category.hashCode()
+				+ (baseForm == null ? 0 : baseForm.hashCode());
+	}
+
+	@Override
+	public String toString() {
+		return baseForm + " (" + category + ")";
+	}
+
+}
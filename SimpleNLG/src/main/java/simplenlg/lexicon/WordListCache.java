@@ -0,0 +1,185 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import simplenlg.framework.WordElement;
+
+/**
+ * A bounded cache of lookup results, for lexicons whose lookups are expensive.
+ * Eviction is frequency-aware (segmented LRU): a new entry goes into a
+ * probationary segment, and only moves to the protected segment if it is used
+ * again. Entries are evicted from the probationary segment first, so a burst
+ * of words which are looked up once cannot push out words such as "be" which
+ * are looked up all the time.
+ * 
+ * <P>
+ * {@link #clear()} starts a new generation; a result computed before the
+ * cache was cleared is not stored, so a change to how words are built cannot
+ * be undone by a lookup which was already running.
+ */
+class WordListCache {
+
+	// share of the cache used for words which have been used more than once
+	private static final double PROTECTED_SHARE = 0.8;
+
+	private int maxSize;
+	private final LinkedHashMap<String, List<WordElement>> probation = new LinkedHashMap<String, List<WordElement>>(
+			16, 0.75f, true);
+	private final LinkedHashMap<String, List<WordElement>> protect = new LinkedHashMap<String, List<WordElement>>(
+			16, 0.75f, true);
+	private long generation = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxSize
+	 *            - maximum number of entries, 0 to cache nothing
+	 */
+	WordListCache(int maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+	}
+
+	/**
+	 * @param key
+	 * @return cached words, or <code>null</code> if the key is not cached
+	 */
+	synchronized List<WordElement> get(String key) {
+		List<WordElement> words = protect.get(key);
+		if (words == null) {
+			words = probation.remove(key);
+			if (words != null) {
+				// used again, so protect it
+				protect.put(key, words);
+				demote();
+			}
+		}
+		if (words == null)
+			misses++;
+		else
+			hits++;
+		return words;
+	}
+
+	/**
+	 * cache the words for a key, unless the cache has been cleared since the
+	 * generation was read
+	 * 
+	 * @param key
+	 * @param words
+	 * @param fromGeneration
+	 *            - value of {@link #getGeneration()} before the words were
+	 *            looked up
+	 */
+	synchronized void put(String key, List<WordElement> words,
+			long fromGeneration) {
+		if (maxSize == 0 || fromGeneration != generation
+				|| protect.containsKey(key))
+			return;
+		probation.put(key, words);
+		trim();
+	}
+
+	/**
+	 * @return the current generation, see {@link #put}
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * empty the cache and start a new generation. The counters are kept
+	 */
+	synchronized void clear() {
+		probation.clear();
+		protect.clear();
+		generation++;
+	}
+
+	/**
+	 * @param maxSize
+	 *            - maximum number of entries, 0 to cache nothing
+	 */
+	synchronized void setMaxSize(int maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+		demote();
+		trim();
+	}
+
+	synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	synchronized int size() {
+		return probation.size() + protect.size();
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * move the least recently used protected entries back to probation, if
+	 * the protected segment is full
+	 */
+	private void demote() {
+		int maxProtected = (int) (maxSize * PROTECTED_SHARE);
+		Iterator<Map.Entry<String, List<WordElement>>> entries = protect
+				.entrySet().iterator();
+		while (protect.size() > maxProtected && entries.hasNext()) {
+			Map.Entry<String, List<WordElement>> entry = entries.next();
+			entries.remove();
+			probation.put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * evict the least recently used entries, probationary ones first, until
+	 * the cache is within its size
+	 */
+	private void trim() {
+		Iterator<String> keys = probation.keySet().iterator();
+		while (size() > maxSize && keys.hasNext()) {
+			keys.next();
+			keys.remove();
+			evictions++;
+		}
+		keys = protect.keySet().iterator();
+		while (size() > maxSize && keys.hasNext()) {
+			keys.next();
+			keys.remove();
+			evictions++;
+		}
+	}
+
+}
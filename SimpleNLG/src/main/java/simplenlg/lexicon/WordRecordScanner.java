@@ -0,0 +1,146 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+/**
+ * Finds the byte ranges of the <code>&lt;word&gt;</code> elements in a lexicon
+ * XML file, without parsing it. Comments and CDATA sections are skipped. This
+ * only works for encodings in which markup characters are single bytes (such
+ * as UTF-8 and ISO-8859-1), and assumes that words are not nested, which is
+ * the case for lexicon files.
+ */
+class WordRecordScanner {
+
+	private static final byte[] WORD_START = "<word".getBytes();
+	private static final byte[] WORD_END = "</word>".getBytes();
+	private static final byte[] TAG_END = ">".getBytes();
+	private static final byte[] COMMENT_START = "<!--".getBytes();
+	private static final byte[] COMMENT_END = "-->".getBytes();
+	private static final byte[] CDATA_START = "<![CDATA[".getBytes();
+	private static final byte[] CDATA_END = "]]>".getBytes();
+
+	// start (inclusive) and end (exclusive) of each word element
+	private int[] starts = new int[1024];
+	private int[] ends = new int[1024];
+	private int count = 0;
+
+	/**
+	 * scan a lexicon file
+	 * 
+	 * @param source
+	 *            - bytes of the lexicon file
+	 */
+	WordRecordScanner(byte[] source) {
+		int pos = 0;
+		while (pos < source.length) {
+			if (source[pos] != '<') {
+				pos++;
+			} else if (matches(source, pos, COMMENT_START)) {
+				pos = skipPast(source, pos, COMMENT_END);
+			} else if (matches(source, pos, CDATA_START)) {
+				pos = skipPast(source, pos, CDATA_END);
+			} else if (matches(source, pos, WORD_START)
+					&& isNameEnd(source, pos + WORD_START.length)) {
+				int tagEnd = skipPast(source, pos, TAG_END);
+				// an empty word (<word/>) has no end tag
+				int end = source[tagEnd - 2] == '/' ? tagEnd : skipPast(
+						source, tagEnd, WORD_END);
+				add(pos, end);
+				pos = end;
+			} else {
+				pos++;
+			}
+		}
+	}
+
+	/**
+	 * @return number of word elements found
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * @param record
+	 * @return offset of the first byte of a word element
+	 */
+	int start(int record) {
+		return starts[record];
+	}
+
+	/**
+	 * @param record
+	 * @return offset just past the last byte of a word element
+	 */
+	int end(int record) {
+		return ends[record];
+	}
+
+	private void add(int start, int end) {
+		if (count == starts.length) {
+			int[] newStarts = new int[count * 2];
+			int[] newEnds = new int[count * 2];
+			System.arraycopy(starts, 0, newStarts, 0, count);
+			System.arraycopy(ends, 0, newEnds, 0, count);
+			starts = newStarts;
+			ends = newEnds;
+		}
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+	}
+
+	/**
+	 * @return true if the bytes at pos match a pattern (ignoring ASCII case)
+	 */
+	private static boolean matches(byte[] source, int pos, byte[] pattern) {
+		if (pos + pattern.length > source.length)
+			return false;
+		for (int i = 0; i < pattern.length; i++) {
+			int a = source[pos + i];
+			int b = pattern[i];
+			if (a != b && Character.toLowerCase((char) a) != b)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the byte at pos ends an element name
+	 */
+	private static boolean isNameEnd(byte[] source, int pos) {
+		if (pos >= source.length)
+			return false;
+		byte b = source[pos];
+		return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n'
+				|| b == '\r';
+	}
+
+	/**
+	 * @return offset just past the next occurrence of a pattern, or the end of
+	 *         the source if there is none
+	 */
+	private static int skipPast(byte[] source, int pos, byte[] pattern) {
+		for (int i = pos; i < source.length; i++)
+			if (matches(source, i, pattern))
+				return i + pattern.length;
+		return source.length;
+	}
+
+}
@@ -0,0 +1,423 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import simplenlg.framework.WordElement;
+
+/**
+ * A compressed trie over the base forms and variants of a lexicon. Each node
+ * holds a run of characters shared by all keys below it, and the words indexed
+ * under the key ending at that node, so common prefixes (and the keys
+ * themselves) are only stored once. As well as exact lookup, the trie can list
+ * the keys starting with a prefix, and the keys within an edit distance of a
+ * string.
+ */
+class WordTrie {
+
+	private static final WordElement[] NO_WORDS = new WordElement[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private static class Node {
+		char[] label; // characters on the edge into this node
+		Node[] children = NO_CHILDREN; // sorted by first character
+		boolean baseKey; // a base form ends here
+		boolean variantKey; // a variant ends here
+		WordElement[] baseWords = NO_WORDS;
+		WordElement[] variantWords = NO_WORDS;
+
+		Node(char[] label) {
+			this.label = label;
+		}
+	}
+
+	private final Node root = new Node(new char[0]);
+	private int size = 0;
+
+	/**
+	 * add a key to the trie
+	 * 
+	 * @param key
+	 * @param variant
+	 *            - <code>true</code> if the key is a variant, not a base form
+	 * @param words
+	 *            - words indexed under the key, may be empty
+	 */
+	void add(String key, boolean variant, List<WordElement> words) {
+		Node node = insert(key);
+		if (!node.baseKey && !node.variantKey)
+			size++;
+		if (variant) {
+			node.variantKey = true;
+			node.variantWords = append(node.variantWords, words);
+		} else {
+			node.baseKey = true;
+			node.baseWords = append(node.baseWords, words);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @param variant
+	 *            - <code>true</code> for variants, <code>false</code> for base
+	 *            forms
+	 * @return the words indexed under a key. The array belongs to the trie and
+	 *         must not be changed
+	 */
+	WordElement[] get(String key, boolean variant) {
+		Node node = find(key);
+		if (node == null)
+			return NO_WORDS;
+		return variant ? node.variantWords : node.baseWords;
+	}
+
+	/**
+	 * @param key
+	 * @return <code>true</code> if the key is a base form or a variant
+	 */
+	boolean contains(String key) {
+		Node node = find(key);
+		return node != null && (node.baseKey || node.variantKey);
+	}
+
+	/**
+	 * @return number of keys in the trie
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return estimated bytes retained by the trie, less the words
+	 */
+	long estimateBytes() {
+		return estimateBytes(root);
+	}
+
+	private static long estimateBytes(Node node) {
+		long bytes = MemoryEstimator.align(MemoryEstimator.OBJECT_HEADER + 4
+				* MemoryEstimator.REFERENCE + 2)
+				+ MemoryEstimator.array(node.label.length, 2);
+		if (node.children != NO_CHILDREN)
+			bytes += MemoryEstimator.array(node.children.length,
+					MemoryEstimator.REFERENCE);
+		if (node.baseWords != NO_WORDS)
+			bytes += MemoryEstimator.array(node.baseWords.length,
+					MemoryEstimator.REFERENCE);
+		if (node.variantWords != NO_WORDS)
+			bytes += MemoryEstimator.array(node.variantWords.length,
+					MemoryEstimator.REFERENCE);
+		for (Node child : node.children)
+			bytes += estimateBytes(child);
+		return bytes;
+	}
+
+	/**
+	 * @param variant
+	 *            - <code>true</code> for variants, <code>false</code> for base
+	 *            forms
+	 * @return an index map holding the words in the trie
+	 */
+	Map<String, List<WordElement>> toMap(boolean variant) {
+		Map<String, List<WordElement>> index = new HashMap<String, List<WordElement>>();
+		addToMap(root, new StringBuilder(), variant, index);
+		return index;
+	}
+
+	/**
+	 * @param prefix
+	 * @param limit
+	 *            - maximum number of keys to return
+	 * @return keys starting with the prefix, in order
+	 */
+	List<String> getKeysWithPrefix(String prefix, int limit) {
+		List<String> result = new ArrayList<String>();
+		Node node = root;
+		int pos = 0;
+		StringBuilder key = new StringBuilder();
+		while (pos < prefix.length()) {
+			Node child = getChild(node, prefix.charAt(pos));
+			if (child == null)
+				return result;
+			// the prefix may end part way along the label
+			for (int i = 0; i < child.label.length; i++, pos++) {
+				if (pos < prefix.length() && child.label[i] != prefix.charAt(pos))
+					return result;
+			}
+			key.append(child.label);
+			node = child;
+		}
+		collectKeys(node, key, result, limit);
+		return result;
+	}
+
+	/**
+	 * @param target
+	 * @param maxDistance
+	 *            - maximum edit distance (insertions, deletions and
+	 *            substitutions)
+	 * @param limit
+	 *            - maximum number of keys to return
+	 * @return keys within the edit distance of the target, closest first
+	 */
+	List<String> getKeysWithinDistance(String target, int maxDistance,
+			int limit) {
+		final List<String> keys = new ArrayList<String>();
+		final List<Integer> distances = new ArrayList<Integer>();
+		int[] row = new int[target.length() + 1];
+		for (int i = 0; i < row.length; i++)
+			row[i] = i;
+		if (row[target.length()] <= maxDistance
+				&& (root.baseKey || root.variantKey)) {
+			keys.add("");
+			distances.add(row[target.length()]);
+		}
+		for (Node child : root.children)
+			collectNearKeys(child, target, maxDistance, row, new StringBuilder(),
+					keys, distances);
+
+		// sort by distance, then key
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < keys.size(); i++)
+			order.add(i);
+		Collections.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int diff = distances.get(a) - distances.get(b);
+				return diff != 0 ? diff : keys.get(a).compareTo(keys.get(b));
+			}
+		});
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < order.size() && result.size() < limit; i++)
+			result.add(keys.get(order.get(i)));
+		return result;
+	}
+
+	/**
+	 * find or create the node for a key, splitting labels as needed
+	 * 
+	 * @param key
+	 * @return the node
+	 */
+	private Node insert(String key) {
+		Node node = root;
+		int pos = 0;
+		while (pos < key.length()) {
+			int index = childIndex(node, key.charAt(pos));
+			if (index < 0) {
+				// no child starts with this character, so add one for the
+				// rest of the key
+				Node child = new Node(key.substring(pos).toCharArray());
+				insertChild(node, -index - 1, child);
+				return child;
+			}
+
+			Node child = node.children[index];
+			int common = 0;
+			while (common < child.label.length && pos + common < key.length()
+					&& child.label[common] == key.charAt(pos + common))
+				common++;
+
+			if (common < child.label.length) {
+				// split the child's label where the key leaves it
+				Node split = new Node(copy(child.label, 0, common));
+				child.label = copy(child.label, common, child.label.length);
+				split.children = new Node[] { child };
+				node.children[index] = split;
+				child = split;
+			}
+			pos += common;
+			node = child;
+		}
+		return node;
+	}
+
+	/**
+	 * @param key
+	 * @return the node for a key, or <code>null</code> if it is not in the trie
+	 */
+	private Node find(String key) {
+		if (key == null)
+			return null;
+		Node node = root;
+		int pos = 0;
+		while (pos < key.length()) {
+			Node child = getChild(node, key.charAt(pos));
+			if (child == null || pos + child.label.length > key.length())
+				return null;
+			for (int i = 0; i < child.label.length; i++)
+				if (child.label[i] != key.charAt(pos + i))
+					return null;
+			pos += child.label.length;
+			node = child;
+		}
+		return node;
+	}
+
+	private void addToMap(Node node, StringBuilder key, boolean variant,
+			Map<String, List<WordElement>> index) {
+		WordElement[] words = variant ? node.variantWords : node.baseWords;
+		if (variant ? node.variantKey : node.baseKey)
+			index.put(key.toString(), new ArrayList<WordElement>(Arrays
+					.asList(words)));
+		for (Node child : node.children) {
+			int length = key.length();
+			key.append(child.label);
+			addToMap(child, key, variant, index);
+			key.setLength(length);
+		}
+	}
+
+	/**
+	 * add the keys at and below a node to a list, in order
+	 * 
+	 * @param node
+	 * @param key
+	 *            - the key ending at the node
+	 * @param result
+	 * @param limit
+	 */
+	private void collectKeys(Node node, StringBuilder key, List<String> result,
+			int limit) {
+		if (result.size() >= limit)
+			return;
+		if (node.baseKey || node.variantKey)
+			result.add(key.toString());
+		for (Node child : node.children) {
+			int length = key.length();
+			key.append(child.label);
+			collectKeys(child, key, result, limit);
+			key.setLength(length);
+		}
+	}
+
+	/**
+	 * add the keys at and below a node which are within an edit distance of a
+	 * target. This extends one row of the edit distance table per character,
+	 * and stops going down once no entry in the row is within the distance
+	 * 
+	 * @param node
+	 * @param target
+	 * @param maxDistance
+	 * @param previous
+	 *            - row of the table for the key above the node
+	 * @param key
+	 *            - the key above the node
+	 * @param keys
+	 * @param distances
+	 */
+	private void collectNearKeys(Node node, String target, int maxDistance,
+			int[] previous, StringBuilder key, List<String> keys,
+			List<Integer> distances) {
+		int length = key.length();
+		int[] row = previous;
+		for (char c : node.label) {
+			int[] next = new int[row.length];
+			next[0] = row[0] + 1;
+			int best = next[0];
+			for (int i = 1; i < row.length; i++) {
+				int cost = target.charAt(i - 1) == c ? 0 : 1;
+				next[i] = Math.min(Math.min(next[i - 1] + 1, row[i] + 1),
+						row[i - 1] + cost);
+				best = Math.min(best, next[i]);
+			}
+			key.append(c);
+			row = next;
+			if (best > maxDistance) {
+				key.setLength(length);
+				return;
+			}
+		}
+
+		if ((node.baseKey || node.variantKey)
+				&& row[target.length()] <= maxDistance) {
+			keys.add(key.toString());
+			distances.add(row[target.length()]);
+		}
+		for (Node child : node.children)
+			collectNearKeys(child, target, maxDistance, row, key, keys,
+					distances);
+		key.setLength(length);
+	}
+
+	/**
+	 * @param node
+	 * @param c
+	 * @return position of the child whose label starts with c, or
+	 *         <code>-(insertion point) - 1</code> if there is none
+	 */
+	private static int childIndex(Node node, char c) {
+		int low = 0;
+		int high = node.children.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char first = node.children[mid].label[0];
+			if (first < c)
+				low = mid + 1;
+			else if (first > c)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @param node
+	 * @param c
+	 * @return the child whose label starts with c, or <code>null</code>
+	 */
+	private static Node getChild(Node node, char c) {
+		int index = childIndex(node, c);
+		return index < 0 ? null : node.children[index];
+	}
+
+	private static void insertChild(Node node, int index, Node child) {
+		Node[] children = new Node[node.children.length + 1];
+		System.arraycopy(node.children, 0, children, 0, index);
+		children[index] = child;
+		System.arraycopy(node.children, index, children, index + 1,
+				node.children.length - index);
+		node.children = children;
+	}
+
+	private static char[] copy(char[] chars, int from, int to) {
+		char[] result = new char[to - from];
+		System.arraycopy(chars, from, result, 0, to - from);
+		return result;
+	}
+
+	private static WordElement[] append(WordElement[] words,
+			List<WordElement> more) {
+		if (more.isEmpty())
+			return words;
+		WordElement[] result = new WordElement[words.length + more.size()];
+		System.arraycopy(words, 0, result, 0, words.length);
+		for (int i = 0; i < more.size(); i++)
+			result[words.length + i] = more.get(i);
+		return result;
+	}
+
+}
@@ -43,6 +43,11 @@ public class EnglishXMLLexicon extends AbstractXMLLexicon {
 		super(lexicon, path);
 		setLanguage(EnLanguage.ENGLISH);
 	}
+
+	public EnglishXMLLexicon(String lexicon, String path, LoadMode mode){
+		super(lexicon, path, mode);
+		setLanguage(EnLanguage.ENGLISH);
+	}
 	
 	public EnglishXMLLexicon(String filename) {
 		super(filename);
@@ -59,6 +64,11 @@ public class EnglishXMLLexicon extends AbstractXMLLexicon {
 		super(lexiconURI);
 		setLanguage(EnLanguage.ENGLISH);
 	}
+
+	public EnglishXMLLexicon(URI lexiconURI, LoadMode mode) {
+		super(lexiconURI, mode);
+		setLanguage(EnLanguage.ENGLISH);
+	}
 	
 	
 	/**
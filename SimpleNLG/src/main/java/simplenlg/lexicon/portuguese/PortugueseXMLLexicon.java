@@ -3,21 +3,43 @@ package simplenlg.lexicon.portuguese;
 import java.io.File;
 import java.net.URI;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
-import simplenlg.features.LexicalFeature;
+import simplenlg.features.Feature;
+import simplenlg.features.Form;
+import simplenlg.features.NumberAgreement;
+import simplenlg.features.Person;
+import simplenlg.features.Tense;
 import simplenlg.framework.ElementCategory;
+import simplenlg.framework.InflectedWordElement;
 import simplenlg.framework.LexicalCategory;
 import simplenlg.framework.WordElement;
 import simplenlg.language.EnLanguage;
 import simplenlg.lexicon.AbstractXMLLexicon;
+import simplenlg.morphology.portuguese.PortugueseMorphologyRules;
 
 public class PortugueseXMLLexicon extends AbstractXMLLexicon {
+
+	// rules used to generate inflected forms. This is static because
+	// getVariants is called while the lexicon is loaded, before the fields of
+	// this class are initialised
+	private static final PortugueseMorphologyRules RULES = new PortugueseMorphologyRules();
+
+	// verb tenses, persons and numbers whose forms are indexed
+	private static final Tense[] TENSES = { Tense.PRESENT, Tense.PAST, Tense.FUTURE };
+	private static final Person[] PERSONS = Person.values();
+	private static final NumberAgreement[] NUMBERS = { NumberAgreement.SINGULAR, NumberAgreement.PLURAL };
 	
 	public PortugueseXMLLexicon(String lexicon, String path){
 		super(lexicon, path);
 		setLanguage(EnLanguage.PORTUGUESE);
 	}
+
+	public PortugueseXMLLexicon(String lexicon, String path, LoadMode mode){
+		super(lexicon, path, mode);
+		setLanguage(EnLanguage.PORTUGUESE);
+	}
 	
 	public PortugueseXMLLexicon(String filename) {
 		super(filename);
@@ -35,27 +57,44 @@ public class PortugueseXMLLexicon extends AbstractXMLLexicon {
 		setLanguage(EnLanguage.PORTUGUESE);
 	}
 
+	public PortugueseXMLLexicon(URI lexiconURI, LoadMode mode) {
+		super(lexiconURI, mode);
+		setLanguage(EnLanguage.PORTUGUESE);
+	}
+
 	/**
 	 * add special cases to lexicon
 	 * 
 	 */
 	@Override
 	public void addSpecialCases() {
-		// add variants of "be"
+		// add variants of "be" (most are already generated by getVariants)
 		WordElement be = getWord("ser", LexicalCategory.VERB);
 		if (be != null) {
-			updateIndex(be, "", getIndexByVariant());
-			updateIndex(be, "sou", getIndexByVariant());
-			updateIndex(be, "", getIndexByVariant());
-			updateIndex(be, "fui", getIndexByVariant());
-			updateIndex(be, "foi", getIndexByVariant());
+			addVariant(be, "");
+			addVariant(be, "sou");
+			addVariant(be, "fui");
+			addVariant(be, "foi");
 		}
 	}
 
+	/**
+	 * index a word under a variant, unless it is already indexed under it
+	 * 
+	 * @param word
+	 * @param variant
+	 */
+	private void addVariant(WordElement word, String variant) {
+		List<WordElement> indexed = getIndexByVariant().get(variant);
+		if (indexed == null || !indexed.contains(word))
+			updateIndex(word, variant, getIndexByVariant());
+	}
+
 
 	/**
-	 * quick-and-dirty routine for getting morph variants should be replaced by
-	 * something better!
+	 * inflected forms of a word, generated with the Portuguese morphology
+	 * rules: plurals of nouns, feminine and plural forms of adjectives, and
+	 * the present, past and future forms, gerund and participle of verbs
 	 * 
 	 * @param word
 	 * @return
@@ -63,26 +102,33 @@ public class PortugueseXMLLexicon extends AbstractXMLLexicon {
 	@Override
 	public Set<String> getVariants(WordElement word) {
 		Set<String> variants = new HashSet<String>();
-		variants.add(word.getBaseForm());
+		String base = word.getBaseForm();
+		variants.add(base);
 		ElementCategory category = word.getCategory();
-		if (category instanceof LexicalCategory) {
+		if (base != null && category instanceof LexicalCategory) {
 			switch ((LexicalCategory) category) {
 			case NOUN:
-				variants.add(getVariant(word, LexicalFeature.PLURAL, "s"));
+				variants.add(getPlural(word, base));
 				break;
 
 			case ADJECTIVE:
-				variants
-						.add(getVariant(word, LexicalFeature.COMPARATIVE, "er"));
-				variants
-						.add(getVariant(word, LexicalFeature.SUPERLATIVE, "est"));
+				String feminine = getFeminine(word);
+				variants.add(getPlural(word, base));
+				variants.add(feminine);
+				if (feminine != null)
+					variants.add(getPlural(word, feminine));
 				break;
 
 			case VERB:
-				variants.add(getVariant(word, LexicalFeature.PRESENT3S, "s"));
-				variants.add(getVariant(word, LexicalFeature.PAST, "ed"));
-				variants.add(getVariant(word, LexicalFeature.PAST_PARTICIPLE,"ed"));
-				variants.add(getVariant(word, LexicalFeature.PRESENT_PARTICIPLE, "ing"));
+				for (Tense tense : TENSES)
+					for (Person person : PERSONS)
+						for (NumberAgreement number : NUMBERS)
+							variants.add(getVerbForm(word, tense, person,
+									number, null));
+				variants.add(getVerbForm(word, null, null, null, Form.GERUND));
+				variants.add(getVerbForm(word, null, null, null, Form.PAST_PARTICIPLE));
+				variants.add(getVerbForm(word, null, null,
+						NumberAgreement.PLURAL, Form.PAST_PARTICIPLE));
 				break;
 
 			default:
@@ -90,9 +136,75 @@ public class PortugueseXMLLexicon extends AbstractXMLLexicon {
 				break;
 			}
 		}
+		variants.remove(null);
 		return variants;
 	}
 
+	/**
+	 * @param word
+	 * @param tense
+	 * @param person
+	 * @param number
+	 * @param form
+	 * @return a form of a verb, as the morphology processor would realise it,
+	 *         or null if the rules cannot inflect the verb
+	 */
+	private static String getVerbForm(WordElement word, Tense tense,
+			Person person, NumberAgreement number, Form form) {
+		InflectedWordElement inflected = new InflectedWordElement(word);
+		if (tense != null)
+			inflected.setFeature(Feature.TENSE, tense);
+		if (person != null)
+			inflected.setFeature(Feature.PERSON, person);
+		if (number != null)
+			inflected.setFeature(Feature.NUMBER, number);
+		if (form != null)
+			inflected.setFeature(Feature.FORM, form);
+		try {
+			return RULES.doVerbMorphology(inflected, word).getRealisation();
+		} catch (RuntimeException ex) {
+			reportInflectionError(word, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * @param word
+	 * @param form
+	 *            - the base or feminine form to make plural
+	 * @return the regular plural of the form, or null if the rules cannot
+	 *         inflect it
+	 */
+	private static String getPlural(WordElement word, String form) {
+		try {
+			return RULES.buildRegularPlural(word, form);
+		} catch (RuntimeException ex) {
+			reportInflectionError(word, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * @param word
+	 * @return the regular feminine form of an adjective, or null if the rules
+	 *         cannot inflect it
+	 */
+	private static String getFeminine(WordElement word) {
+		try {
+			return RULES.buildRegularFeminineWord(word.getBaseForm());
+		} catch (RuntimeException ex) {
+			reportInflectionError(word, ex);
+			return null;
+		}
+	}
+
+	// the word is still indexed by its other forms
+	private static void reportInflectionError(WordElement word,
+			RuntimeException ex) {
+		System.out.println("Lexicon error: cannot inflect "
+				+ word.getBaseForm() + ": " + ex);
+	}
+
 
 	/**
 	 * quick-and-dirty routine for standard orthographic changes Should be
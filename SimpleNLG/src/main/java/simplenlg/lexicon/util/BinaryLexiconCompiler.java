@@ -0,0 +1,385 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Westwater, Roman Kutlak, Margaret Mitchell, and Saad Mahamood.
+ */
+package simplenlg.lexicon.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import simplenlg.features.Inflection;
+import simplenlg.framework.LexicalCategory;
+import simplenlg.framework.WordElement;
+import simplenlg.lexicon.AbstractXMLLexicon;
+import simplenlg.lexicon.BinaryLexicon;
+import simplenlg.lexicon.english.EnglishXMLLexicon;
+import simplenlg.lexicon.portuguese.PortugueseXMLLexicon;
+
+/**
+ * <p>This class converts an XML lexicon into the compact binary format read by
+ * {@link BinaryLexicon}. The variant index (including any special cases added
+ * by the XML lexicon) is precomputed, so the binary lexicon needs no
+ * language-specific code at load time.</p>
+ */
+public class BinaryLexiconCompiler {
+
+	/* orders keys by their UTF-8 bytes, as unsigned values */
+	private static final Comparator<byte[]> KEY_ORDER = new Comparator<byte[]>() {
+		public int compare(byte[] a, byte[] b) {
+			int n = Math.min(a.length, b.length);
+			for (int i = 0; i < n; i++) {
+				int diff = (a[i] & 0xff) - (b[i] & 0xff);
+				if (diff != 0)
+					return diff;
+			}
+			return a.length - b.length;
+		}
+	};
+
+	/* initial size of the direct buffer used by compileOffHeap */
+	private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * an output stream which writes into a direct buffer, doubling it when it
+	 * is full, so an off-heap lexicon is not first built on the heap
+	 */
+	private static class DirectBufferOutputStream extends OutputStream {
+		private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+		@Override
+		public void write(int b) {
+			ensureRemaining(1);
+			buffer.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureRemaining(len);
+			buffer.put(b, off, len);
+		}
+
+		private void ensureRemaining(int needed) {
+			if (buffer.remaining() >= needed)
+				return;
+			int capacity = Math.max(buffer.capacity() * 2, buffer.position()
+					+ needed);
+			ByteBuffer bigger = ByteBuffer.allocateDirect(capacity);
+			buffer.flip();
+			bigger.put(buffer);
+			buffer = bigger;
+		}
+	}
+
+	/**
+	 * This main method compiles an XML lexicon into a binary lexicon.
+	 *
+	 * @param args : List of Arguments that this command line application must be provided with in order:
+	 * <ol>
+	 * 		<li>The language of the lexicon, <code>english</code> or <code>portuguese</code></li>
+	 * 		<li>The full path to the XML lexicon file</li>
+	 * 		<li>The full path to the binary lexicon file that will be written</li>
+	 * </ol>
+	 *
+	 *<p>Example usage:
+	 *   java simplenlg.lexicon.util.BinaryLexiconCompiler english default-lexicon.xml default-lexicon.bin
+	 *</p>
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			printErrorArgumentMessage();
+			return;
+		}
+
+		AbstractXMLLexicon lexicon;
+		if (args[0].equalsIgnoreCase("english"))
+			lexicon = new EnglishXMLLexicon(args[1]);
+		else if (args[0].equalsIgnoreCase("portuguese"))
+			lexicon = new PortugueseXMLLexicon(args[1]);
+		else {
+			printErrorArgumentMessage();
+			return;
+		}
+
+		try {
+			compile(lexicon, new File(args[2]));
+			System.out.println("*** Binary Lexicon Compilation Completed.");
+		} catch (IOException e) {
+			System.err.println("*** An Error occured during the compilation. The Exception message is below: ");
+			System.err.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * compile a lexicon and write it to a file
+	 *
+	 * @param lexicon
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void compile(AbstractXMLLexicon lexicon, File file)
+			throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(compile(lexicon));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * compile a lexicon into a direct (off-heap) buffer, and open it. The
+	 * XML lexicon can then be dropped, leaving no words on the Java heap
+	 *
+	 * @param lexicon
+	 * @return a binary lexicon held outside the Java heap
+	 * @throws IOException
+	 *             if the lexicon cannot be compiled, see
+	 *             {@link #compile(AbstractXMLLexicon)}
+	 */
+	public static BinaryLexicon compileOffHeap(AbstractXMLLexicon lexicon)
+			throws IOException {
+		DirectBufferOutputStream bytes = new DirectBufferOutputStream();
+		int[] header = write(lexicon, new DataOutputStream(bytes));
+		ByteBuffer buffer = bytes.buffer;
+		buffer.flip();
+		putHeader(buffer, header);
+		return new BinaryLexicon(buffer);
+	}
+
+	/**
+	 * compile a lexicon into the binary format
+	 *
+	 * @param lexicon
+	 * @return the binary lexicon
+	 * @throws IOException
+	 *             if the lexicon was loaded lazily or its indices have been
+	 *             compacted
+	 */
+	public static byte[] compile(AbstractXMLLexicon lexicon) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int[] header = write(lexicon, new DataOutputStream(bytes));
+		ByteBuffer result = ByteBuffer.wrap(bytes.toByteArray());
+		putHeader(result, header);
+		return result.array();
+	}
+
+	/**
+	 * write a lexicon in the binary format, leaving the word count and index
+	 * offsets in the header as zero
+	 *
+	 * @param lexicon
+	 * @param out
+	 * @return the word count and the offsets of the base, variant and ID
+	 *         indices, to go in the header
+	 * @throws IOException
+	 *             if the lexicon was loaded lazily or its indices have been
+	 *             compacted
+	 */
+	private static int[] write(AbstractXMLLexicon lexicon, DataOutputStream out)
+			throws IOException {
+		if (lexicon.isLazy())
+			throw new IOException("cannot compile a lazily loaded lexicon");
+		if (lexicon.isCompact())
+			throw new IOException("cannot compile a lexicon with compacted indices");
+
+		// header; word count and index offsets are filled in at the end
+		out.writeInt(BinaryLexicon.FORMAT_MAGIC);
+		out.writeInt(BinaryLexicon.FORMAT_VERSION);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeInt(0);
+		writeString(out, lexicon.getLanguage() == null ? null : lexicon
+				.getLanguage().name());
+
+		// word records. Special cases may index words which are not in the
+		// word set, so those get a record of their own
+		Map<WordElement, Integer> records = new IdentityHashMap<WordElement, Integer>();
+		for (WordElement word : lexicon.getAllWords())
+			writeRecord(out, word, records);
+		for (List<WordElement> entries : lexicon.getIndexByBase().values())
+			for (WordElement word : entries)
+				writeRecord(out, word, records);
+		for (List<WordElement> entries : lexicon.getIndexByVariant().values())
+			for (WordElement word : entries)
+				writeRecord(out, word, records);
+		for (WordElement word : lexicon.getIndexByID().values())
+			writeRecord(out, word, records);
+
+		int baseIndex = out.size();
+		writeIndex(out, lexicon.getIndexByBase(), records);
+		int variantIndex = out.size();
+		writeIndex(out, lexicon.getIndexByVariant(), records);
+		int idIndex = out.size();
+		Map<String, List<WordElement>> ids = new HashMap<String, List<WordElement>>();
+		for (Map.Entry<String, WordElement> entry : lexicon.getIndexByID()
+				.entrySet())
+			ids.put(entry.getKey(), Collections.singletonList(entry.getValue()));
+		writeIndex(out, ids, records);
+		out.flush();
+		return new int[] { records.size(), baseIndex, variantIndex, idIndex };
+	}
+
+	/**
+	 * fill in the word count and index offsets of a compiled lexicon
+	 *
+	 * @param buffer
+	 * @param header
+	 *            - as returned by {@link #write(AbstractXMLLexicon, DataOutputStream)}
+	 */
+	private static void putHeader(ByteBuffer buffer, int[] header) {
+		for (int i = 0; i < header.length; i++)
+			buffer.putInt(BinaryLexicon.HEADER_WORD_COUNT + 4 * i, header[i]);
+	}
+
+	/**
+	 * write a word record, unless the word has already been written
+	 *
+	 * @param out
+	 * @param word
+	 * @param records
+	 *            - offsets of the records written so far
+	 * @throws IOException
+	 */
+	private static void writeRecord(DataOutputStream out, WordElement word,
+			Map<WordElement, Integer> records) throws IOException {
+		if (records.containsKey(word))
+			return;
+		records.put(word, out.size());
+
+		LexicalCategory category = word.getCategory() instanceof LexicalCategory ? (LexicalCategory) word
+				.getCategory()
+				: LexicalCategory.ANY;
+		out.writeByte(category.ordinal());
+		writeString(out, word.getBaseForm());
+		writeString(out, word.getId());
+
+		Inflection defaultInfl = (Inflection) word
+				.getDefaultInflectionalVariant();
+		out.writeByte(defaultInfl == null ? -1 : defaultInfl.ordinal());
+		List<Inflection> inflections = new ArrayList<Inflection>();
+		for (Inflection infl : Inflection.values())
+			if (word.hasInflectionalVariant(infl))
+				inflections.add(infl);
+		out.writeByte(inflections.size());
+		for (Inflection infl : inflections)
+			out.writeByte(infl.ordinal());
+
+		List<String> features = new ArrayList<String>();
+		for (String feature : word.getAllFeatureNames())
+			if (word.getFeature(feature) != null)
+				features.add(feature);
+		out.writeShort(features.size());
+		for (String feature : features) {
+			Object value = word.getFeature(feature);
+			writeString(out, feature);
+			if (value instanceof Boolean) {
+				out.writeByte(BinaryLexicon.VALUE_BOOLEAN);
+				out.writeByte(((Boolean) value).booleanValue() ? 1 : 0);
+			} else if (value instanceof Inflection) {
+				out.writeByte(BinaryLexicon.VALUE_INFLECTION);
+				out.writeByte(((Inflection) value).ordinal());
+			} else {
+				out.writeByte(BinaryLexicon.VALUE_STRING);
+				writeString(out, value.toString());
+			}
+		}
+	}
+
+	/**
+	 * write an index: the key count, a table of key offsets in key order, and
+	 * then each key followed by the offsets of its word records
+	 *
+	 * @param out
+	 * @param index
+	 * @param records
+	 * @throws IOException
+	 */
+	private static void writeIndex(DataOutputStream out,
+			Map<String, List<WordElement>> index,
+			Map<WordElement, Integer> records) throws IOException {
+		byte[][] keys = new byte[index.size()][];
+		List<List<WordElement>> postings = new ArrayList<List<WordElement>>();
+		Map<byte[], List<WordElement>> byKey = new IdentityHashMap<byte[], List<WordElement>>();
+		int n = 0;
+		for (Map.Entry<String, List<WordElement>> entry : index.entrySet()) {
+			keys[n] = entry.getKey().getBytes(BinaryLexicon.UTF8);
+			byKey.put(keys[n], entry.getValue());
+			n++;
+		}
+		Arrays.sort(keys, KEY_ORDER);
+
+		int start = out.size();
+		out.writeInt(keys.length);
+		int entry = start + 4 + 4 * keys.length;
+		for (byte[] key : keys) {
+			postings.add(byKey.get(key));
+			out.writeInt(entry);
+			entry += 4 + key.length + 4 + 4 * byKey.get(key).size();
+		}
+		for (int i = 0; i < keys.length; i++) {
+			out.writeInt(keys[i].length);
+			out.write(keys[i]);
+			out.writeInt(postings.get(i).size());
+			for (WordElement word : postings.get(i))
+				out.writeInt(records.get(word));
+		}
+	}
+
+	/**
+	 * write a length-prefixed UTF-8 string
+	 *
+	 * @param out
+	 * @param value
+	 *            - string, may be <code>null</code>
+	 * @throws IOException
+	 */
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(BinaryLexicon.UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Prints Arguments Error Messages if incorrect or not enough parameters have been supplied.
+	 */
+	private static void printErrorArgumentMessage() {
+		System.err.println("Insuffient number of arguments supplied. Please supply the following Arguments: \n");
+		System.err.println("\t\t 1. The language of the lexicon, english or portuguese");
+		System.err.println("\t\t 2. The full path to the XML lexicon file");
+		System.err.println("\t\t 3. The full path to the binary lexicon file that will be written");
+	}
+
+}
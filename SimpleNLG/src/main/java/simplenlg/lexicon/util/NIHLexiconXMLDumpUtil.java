@@ -18,9 +18,26 @@
  */
 package simplenlg.lexicon.util;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.LineNumberReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import simplenlg.framework.LexicalCategory;
 import simplenlg.framework.WordElement;
@@ -32,6 +49,9 @@ import simplenlg.lexicon.NIHDBLexicon;
  * <p>This class reads in a CSV word list, looks up the words in the NIH lexicon, 
  * and writes the XML words into an output file. This XML file can then be used as the XML Lexicon source for SimpleNLG.</p>
  * 
+ * <p>It can also export every word in the NIH lexicon (see {@link #exportAll(String, String, int)}),
+ * looking words up on several threads, each with its own DB connection.</p>
+ * 
  * @author Ehud Reiter
  */
 public class NIHLexiconXMLDumpUtil {
@@ -41,6 +61,13 @@ public class NIHLexiconXMLDumpUtil {
 	private static String WORDLIST_FILENAME;  // word list
 	private static String XML_FILENAME;  // word list
 
+	// full export
+	private static final String EXPORT_ALL_OPTION = "-all";
+	private static final int EXPORT_BATCH_SIZE = 500;  // records looked up by a worker at a time
+	private static final String DB_HSQL_DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+	private static final String DB_HSQL_JDBC = "jdbc:hsqldb:";
+	private static final String DB_HSQL_EXTENSION = ".data";
+
 	/**
 	 * This main method reads a list of CSV words and POS tags and looks up against 
 	 * the NIHDB Lexicon for a corresponding entry. If found the baseform is written out into a XML 
@@ -58,11 +85,28 @@ public class NIHLexiconXMLDumpUtil {
 	 *   
 	 *   You will need to have the HSQLDB driver (org.hsqldb.jdbc.JDBCDriver) on your Java classpath before running this application.
 	 *</p>
+	 *
+	 *<p>To export every word in the NIH lexicon instead, give <code>-all</code>, the database file, the XML file and
+	 *   (optionally) the number of threads:
+	 *   java simplenlg.lexicon.util.NIHLexiconXMLDumpUtil -all C:\\NIHDB\\lexAccess2009 C:\\NIHDB\\full-lexicon.xml 8
+	 *</p>
 	 */
 	public static void main(String[] args) {
         Lexicon lex = null;
-     
-        if(args.length == 3) {
+
+        if((args.length == 3 || args.length == 4) && args[0].equalsIgnoreCase(EXPORT_ALL_OPTION)) {
+        	try {
+        		int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        		exportAll(args[1], args[2], threads);
+        		System.out.println("*** XML Lexicon Export Completed.");
+        	} catch (Exception e) {
+        		System.err.println("*** An Error occured during the export. The Exception message is below: ");
+        		System.err.println(e.getMessage());
+        		System.err.println("************************");
+        		System.err.println("Please make sure you have the correct application arguments: ");
+        		printArgumentsMessage();
+        	}
+        } else if(args.length == 3) {
         	
         	DB_FILENAME = args[0];
         	WORDLIST_FILENAME = args[1];
@@ -145,6 +189,135 @@ public class NIHLexiconXMLDumpUtil {
         }
 	}
 	
+	/**
+	 * Export every word in the NIH lexicon to an XML lexicon file. The IDs of
+	 * the NIH records are read in order and split into batches, which are
+	 * looked up on a pool of threads, each with its own connection to the DB.
+	 * Batches are written out in order as soon as they are done, and only a few
+	 * batches per thread are in progress at any time, so the output is the same
+	 * on every run and memory use does not grow with the size of the lexicon.
+	 * 
+	 * @param dbFilename
+	 *            - NIH lexicon HSQL DB
+	 * @param xmlFilename
+	 *            - XML file to write
+	 * @param threads
+	 *            - number of threads (and DB connections) to use
+	 * @return number of words written
+	 * @throws Exception
+	 *             if the DB cannot be read or the file cannot be written
+	 */
+	public static int exportAll(final String dbFilename, String xmlFilename,
+			int threads) throws Exception {
+		String dbName = dbFilename.endsWith(DB_HSQL_EXTENSION) ? dbFilename
+				.substring(0, dbFilename.length() - DB_HSQL_EXTENSION.length())
+				: dbFilename;
+		Class.forName(DB_HSQL_DRIVER);
+
+		// each worker thread has its own lexicon, and so its own DB connection
+		final List<NIHDBLexicon> lexicons = Collections
+				.synchronizedList(new ArrayList<NIHDBLexicon>());
+		final ThreadLocal<NIHDBLexicon> workerLexicon = new ThreadLocal<NIHDBLexicon>() {
+			@Override
+			protected NIHDBLexicon initialValue() {
+				NIHDBLexicon lexicon = new NIHDBLexicon(dbFilename);
+				// every word is only looked up once
+				lexicon.setCacheSize(0);
+				lexicons.add(lexicon);
+				return lexicon;
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+				threads));
+		LinkedList<Future<List<String>>> pending = new LinkedList<Future<List<String>>>();
+		int maxPending = 2 * Math.max(1, threads);
+		int written = 0;
+
+		Connection conn = DriverManager.getConnection(DB_HSQL_JDBC + dbName,
+				"sa", "");
+		Writer xmlFile = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(xmlFilename), "UTF-8"));
+		try {
+			xmlFile.write(String.format("<lexicon>%n"));
+
+			Statement statement = conn.createStatement();
+			statement.setFetchSize(EXPORT_BATCH_SIZE);
+			ResultSet ids = statement
+					.executeQuery("SELECT DISTINCT eui FROM LEX_RECORD WHERE lastAction <> 3 ORDER BY eui");
+			List<String> batch = new ArrayList<String>();
+			while (ids.next()) {
+				batch.add(ids.getString(1));
+				if (batch.size() == EXPORT_BATCH_SIZE) {
+					pending.add(executor.submit(exportBatch(batch, workerLexicon)));
+					batch = new ArrayList<String>();
+				}
+				// write finished batches, in order, so few are held in memory
+				while (pending.size() > maxPending)
+					written += write(xmlFile, pending.removeFirst().get());
+			}
+			ids.close();
+			statement.close();
+			if (!batch.isEmpty())
+				pending.add(executor.submit(exportBatch(batch, workerLexicon)));
+			while (!pending.isEmpty())
+				written += write(xmlFile, pending.removeFirst().get());
+
+			xmlFile.write(String.format("</lexicon>%n"));
+		} finally {
+			executor.shutdownNow();
+			xmlFile.close();
+			conn.close();
+			synchronized (lexicons) {
+				for (NIHDBLexicon lexicon : lexicons)
+					lexicon.close();
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * @param ids
+	 *            - IDs of NIH records
+	 * @param workerLexicon
+	 *            - lexicon of the thread running the task
+	 * @return task which returns the XML for each word with these IDs
+	 */
+	private static Callable<List<String>> exportBatch(final List<String> ids,
+			final ThreadLocal<NIHDBLexicon> workerLexicon) {
+		return new Callable<List<String>>() {
+			public List<String> call() {
+				NIHDBLexicon lexicon = workerLexicon.get();
+				List<String> xml = new ArrayList<String>();
+				for (String id : ids) {
+					List<WordElement> words = lexicon.getWordsByID(id);
+					if (words == null || words.isEmpty())
+						System.out.println("*** The following ID is not found: " + id);
+					else
+						for (WordElement word : words)
+							xml.add(word.toXML());
+				}
+				return xml;
+			}
+		};
+	}
+
+	/**
+	 * write the XML for a batch of words
+	 * 
+	 * @param xmlFile
+	 * @param xml
+	 *            - XML for each word
+	 * @return number of words written
+	 * @throws IOException
+	 */
+	private static int write(Writer xmlFile, List<String> xml)
+			throws IOException {
+		for (String word : xml)
+			xmlFile.write(word);
+		return xml.size();
+	}
+
 	/**
 	 * Prints Arguments Error Messages if incorrect or not enough parameters have been supplied. 
 	 */
@@ -160,6 +333,11 @@ public class NIHLexiconXMLDumpUtil {
 		System.err.println("\t\t 1. The full path to the NIHDB Lexicon database file e.g. C:\\NIHDB\\lexAccess2009 ");
     	System.err.println("\t\t 2. The full path to the list of baseforms and POS tags to include in the written out XML Lexicon file");
     	System.err.println("\t\t 3. The full path to the XML file that the XML Lexicon will be written out to.");
+    	System.err.println("or, to export every word in the NIH lexicon: ");
+    	System.err.println("\t\t 1. -all");
+    	System.err.println("\t\t 2. The full path to the NIHDB Lexicon database file e.g. C:\\NIHDB\\lexAccess2009 ");
+    	System.err.println("\t\t 3. The full path to the XML file that the XML Lexicon will be written out to.");
+    	System.err.println("\t\t 4. (optional) The number of threads to use");
 	}
 	
 	
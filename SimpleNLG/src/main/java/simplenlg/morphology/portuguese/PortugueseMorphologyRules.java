@@ -853,7 +853,7 @@ public class PortugueseMorphologyRules extends AbstractMorphologyRules {
 	 * R      >       A                  # cantor > cantora
 	 * @return
 	 */
-	private String buildRegularFeminineWord(String word){
+	public String buildRegularFeminineWord(String word){
 		if (word.endsWith("o")){
 			return word.substring(0, word.length() - 1) + "a";
 		} else if (word.endsWith("r")){
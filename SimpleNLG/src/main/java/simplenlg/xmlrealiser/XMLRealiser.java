@@ -11,6 +11,7 @@ import simplenlg.framework.DocumentElement;
 import simplenlg.framework.NLGElement;
 import simplenlg.lexicon.Lexicon;
 import simplenlg.lexicon.NIHDBLexicon;
+import simplenlg.lexicon.ReloadableLexicon;
 import simplenlg.lexicon.english.EnglishXMLLexicon;
 import simplenlg.realiser.english.Realiser;
 
@@ -25,12 +26,15 @@ public class XMLRealiser {
 	/** The lex db. */
 	static String lexDB = null;
 
-	/** The lexicon. */
-	static Lexicon lexicon = null;
+	/** The lexicon. New versions are swapped in while requests are running. */
+	static volatile ReloadableLexicon lexicon = null;
 
 	/** The lexicon type. */
 	static LexiconType lexiconType = null;
 
+	/** The lexicon file. */
+	static String lexiconFile = null;
+
 	/** The record. */
 	static Recording record = null;
 
@@ -42,6 +46,7 @@ public class XMLRealiser {
 	 * The arg[0] is the op code. op codes are "realise", "setLexicon",
 	 * "startRecording", "stopRecording" Usage is: realize <xml string> returns
 	 * realised string. setLexicon (XML | NIHDB) <path to lexicon> returns "OK"
+	 * or not. reloadLexicon reloads the lexicon from its file and returns "OK"
 	 * or not. startRecording <path to recording directory> returns "OK" or not.
 	 * stopRecording returns name of file which contains recording.
 	 * Recordings can be used as regression tests. See simplenlg/test/xmlrealiser/Tester.java
@@ -54,6 +59,8 @@ public class XMLRealiser {
 		realise,
 		/** The set lexicon. */
 		setLexicon,
+		/** The reload lexicon. */
+		reloadLexicon,
 		/** The start recording. */
 		startRecording,
 		/** The stop recording. */
@@ -125,6 +132,9 @@ public class XMLRealiser {
 			setLexicon(lexType, lexFile);
 			break;
 		}
+		case reloadLexicon:
+			reloadLexicon();
+			break;
 		case startRecording: {
 			if (args.length <= argx) {
 				throw new XMLRealiserException("invalid args");
@@ -157,33 +167,83 @@ public class XMLRealiser {
 	}
 
 	/**
-	 * Sets the lexicon.
+	 * Sets the lexicon. The new lexicon is loaded before it replaces the old
+	 * one, and requests which are being realised finish with the old one.
 	 * 
 	 * @param lexType
 	 *            the lex type
 	 * @param lexFile
 	 *            the lex file
 	 */
-	public static void setLexicon(LexiconType lexType, String lexFile) {
-		if (lexiconType != null && lexicon != null && lexType == lexiconType) {
+	public static synchronized void setLexicon(LexiconType lexType, String lexFile) {
+		if (lexiconType != null && lexicon != null && lexType == lexiconType
+				&& (lexType == LexiconType.DEFAULT || lexFile == null
+						|| lexFile.equals(lexiconFile))) {
 			return; // done already
 		}
 
-		if (lexicon != null) {
-			lexicon.close();
-			lexicon = null;
-			lexiconType = null;
-		}
+		Lexicon newLexicon = loadLexicon(lexType, lexFile);
+		if (newLexicon == null)
+			return;
+		swapLexicon(newLexicon);
+		lexiconType = lexType;
+		lexiconFile = lexFile;
+	}
 
+	/**
+	 * Reloads the lexicon from its file, for example after it has been edited.
+	 * Requests which are being realised finish with the old lexicon.
+	 */
+	public static synchronized void reloadLexicon() {
+		if (lexiconType == null || lexicon == null)
+			return;
+		Lexicon newLexicon = loadLexicon(lexiconType, lexiconFile);
+		if (newLexicon != null)
+			swapLexicon(newLexicon);
+	}
+
+	/**
+	 * Loads a lexicon.
+	 * 
+	 * @param lexType
+	 *            the lex type
+	 * @param lexFile
+	 *            the lex file
+	 * @return the lexicon, or null for an unknown type
+	 */
+	private static Lexicon loadLexicon(LexiconType lexType, String lexFile) {
 		if (lexType == LexiconType.XML) {
-			lexicon = new EnglishXMLLexicon(lexFile);
+			return new EnglishXMLLexicon(lexFile);
 		} else if (lexType == LexiconType.NIHDB) {
-			lexicon = new NIHDBLexicon(lexFile);
+			return new NIHDBLexicon(lexFile);
 		} else if (lexType == LexiconType.DEFAULT) {
-			lexicon = Lexicon.getEnglishDefaultLexicon();
+			return Lexicon.getEnglishDefaultLexicon();
 		}
+		return null;
+	}
 
-		lexiconType = lexType;
+	/**
+	 * Gets the lexicon, which is the default lexicon if none has been set.
+	 * 
+	 * @return the lexicon
+	 */
+	private static synchronized ReloadableLexicon getLexicon() {
+		if (lexicon == null)
+			lexicon = new ReloadableLexicon(Lexicon.getEnglishDefaultLexicon());
+		return lexicon;
+	}
+
+	/**
+	 * Makes a lexicon the current one.
+	 * 
+	 * @param newLexicon
+	 *            the new lexicon
+	 */
+	private static synchronized void swapLexicon(Lexicon newLexicon) {
+		if (lexicon == null)
+			lexicon = new ReloadableLexicon(newLexicon);
+		else
+			lexicon.swap(newLexicon);
 	}
 
 	/**
@@ -244,18 +304,24 @@ public class XMLRealiser {
 		String output = "";
 		if (wt != null) {
 			try {
-				if (lexicon == null) {
-					lexicon = Lexicon.getEnglishDefaultLexicon();
-				}
-				UnWrapper w = new UnWrapper(lexicon);
-				DocumentElement t = w.UnwrapDocumentElement(wt);
-				if (t != null) {
-					Realiser r = new Realiser(lexicon);
-					r.initialise();
-
-					NLGElement tr = r.realise(t);
-
-					output = tr.getRealisation();
+				// the whole request uses one version of the lexicon
+				ReloadableLexicon current = lexicon;
+				if (current == null)
+					current = getLexicon();
+				ReloadableLexicon.Version version = current.acquire();
+				try {
+					UnWrapper w = new UnWrapper(version.getLexicon());
+					DocumentElement t = w.UnwrapDocumentElement(wt);
+					if (t != null) {
+						Realiser r = new Realiser(version.getLexicon());
+						r.initialise();
+
+						NLGElement tr = r.realise(t);
+
+						output = tr.getRealisation();
+					}
+				} finally {
+					version.release();
 				}
 
 			} catch (Exception e) {
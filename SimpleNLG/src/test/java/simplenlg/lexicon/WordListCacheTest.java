@@ -0,0 +1,100 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import simplenlg.framework.LexicalCategory;
+import simplenlg.framework.WordElement;
+
+/**
+ * Tests for the segmented LRU cache used by lexicons with expensive lookups.
+ */
+public class WordListCacheTest {
+
+	/**
+	 * @param form
+	 * @return the words cached for a form
+	 */
+	private static List<WordElement> words(String form) {
+		List<WordElement> words = new ArrayList<WordElement>();
+		words.add(new WordElement(form, LexicalCategory.NOUN));
+		return words;
+	}
+
+	/**
+	 * A word used twice survives a burst of words used once, and the counters
+	 * follow the lookups.
+	 */
+	@Test
+	public void protectedEntryTest() {
+		WordListCache cache = new WordListCache(10);
+		Assert.assertNull(cache.get("be"));
+		cache.put("be", words("be"), cache.getGeneration());
+		Assert.assertNotNull(cache.get("be"));
+
+		for (int i = 0; i < 100; i++) {
+			String form = "word" + i;
+			Assert.assertNull(cache.get(form));
+			cache.put(form, words(form), cache.getGeneration());
+		}
+		Assert.assertEquals(10, cache.size());
+		Assert.assertEquals("be", cache.get("be").get(0).getBaseForm());
+		Assert.assertNull(cache.get("word0"));
+		Assert.assertNotNull(cache.get("word99"));
+
+		Assert.assertEquals(3, cache.getHits());
+		Assert.assertEquals(102, cache.getMisses());
+		Assert.assertEquals(91, cache.getEvictions());
+
+		// a smaller cache demotes protected words before evicting them
+		cache.setMaxSize(2);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(99, cache.getEvictions());
+	}
+
+	/**
+	 * Words looked up before the cache was cleared are not stored.
+	 */
+	@Test
+	public void generationTest() {
+		WordListCache cache = new WordListCache(10);
+		long generation = cache.getGeneration();
+		cache.put("dog", words("dog"), generation);
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+
+		cache.put("cat", words("cat"), generation);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertNull(cache.get("cat"));
+
+		cache.put("cat", words("cat"), cache.getGeneration());
+		Assert.assertNotNull(cache.get("cat"));
+
+		// nothing is cached in a cache of size 0
+		cache.setMaxSize(0);
+		cache.put("dog", words("dog"), cache.getGeneration());
+		Assert.assertEquals(0, cache.size());
+	}
+}
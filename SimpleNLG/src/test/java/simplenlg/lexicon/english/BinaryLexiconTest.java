@@ -0,0 +1,123 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell, Saad Mahamood.
+ */
+package simplenlg.lexicon.english;
+
+import java.io.File;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simplenlg.framework.LexicalCategory;
+import simplenlg.language.EnLanguage;
+import simplenlg.lexicon.BinaryLexicon;
+import simplenlg.lexicon.LexiconStatistics;
+import simplenlg.lexicon.util.BinaryLexiconCompiler;
+
+/**
+ * Tests for BinaryLexicon, compiled from the default XML lexicon
+ */
+public class BinaryLexiconTest {
+
+	// compiled lexicon file
+	File file = null;
+
+	// lexicon object -- an instance of Lexicon
+	BinaryLexicon lexicon = null;
+
+	// lexicon it was compiled from
+	EnglishXMLLexicon xmlLexicon = null;
+
+	@Before
+	public void setUp() throws Exception {
+		this.xmlLexicon = new EnglishXMLLexicon(
+				"default-lexicon.xml", "/simplenlg/lexicon/default-lexicon.xml");
+		this.file = File.createTempFile("default-lexicon", ".bin");
+		BinaryLexiconCompiler.compile(xmlLexicon, this.file);
+
+		long startTime = System.currentTimeMillis();
+		this.lexicon = new BinaryLexicon(this.file);
+		long stopTime = System.currentTimeMillis();
+
+		System.out.format("Loading binary lexicon took %d ms%n",
+				stopTime - startTime);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (lexicon != null)
+			lexicon.close();
+		if (file != null)
+			file.delete();
+	}
+
+	/**
+	 * Runs basic Lexicon tests.
+	 */
+	@Test
+	public void basicLexiconTests() {
+		SharedLexiconTests tests = new SharedLexiconTests();
+		tests.doBasicTests(lexicon);
+	}
+
+	/**
+	 * The header and indices survive the round trip.
+	 */
+	@Test
+	public void binaryFormatTests() {
+		Assert.assertEquals(EnLanguage.ENGLISH, lexicon.getLanguage());
+		Assert.assertTrue(lexicon.getWordCount() > 6000);
+
+		// variants added as special cases by the XML lexicon
+		Assert.assertEquals("be", lexicon.getWordFromVariant("were",
+				LexicalCategory.VERB).getBaseForm());
+		Assert.assertEquals(0, lexicon.getWordsFromVariant("were",
+				LexicalCategory.NOUN).size());
+
+		// keys either side of every other key
+		Assert.assertFalse(lexicon.hasWord(""));
+		Assert.assertFalse(lexicon.hasWord("\u00ff\u00ff"));
+
+		// statistics are read from the indices
+		LexiconStatistics statistics = lexicon.getStatistics();
+		Assert.assertEquals(lexicon.getWordCount(), statistics.getWordCount());
+		Assert.assertTrue(statistics.getWordCount(LexicalCategory.NOUN) > 0);
+		Assert.assertTrue(statistics.getIndex(LexiconStatistics.INDEX_BY_VARIANT).getKeys() > 0);
+	}
+
+	/**
+	 * A lexicon compiled into a direct buffer finds the same words.
+	 */
+	@Test
+	public void offHeapTests() throws Exception {
+		Assert.assertTrue(lexicon.isOffHeap());
+		BinaryLexicon offHeap = BinaryLexiconCompiler.compileOffHeap(xmlLexicon);
+		Assert.assertTrue(offHeap.isOffHeap());
+		Assert.assertEquals(lexicon.getWordCount(), offHeap.getWordCount());
+		Assert.assertEquals(xmlLexicon.getWord("fish", LexicalCategory.NOUN).getId(),
+				offHeap.getWord("fish", LexicalCategory.NOUN).getId());
+		Assert.assertEquals("be", offHeap.getWordFromVariant("were").getBaseForm());
+
+		SharedLexiconTests tests = new SharedLexiconTests();
+		tests.doBasicTests(offHeap);
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon.english;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import simplenlg.lexicon.LexiconFilter;
+
+/**
+ * Tests for the Bloom filters which answer definite negatives for a lexicon.
+ */
+public class LexiconFilterTest {
+
+	/**
+	 * Every form in a filter passes it, ignoring case, and few other forms do.
+	 */
+	@Test
+	public void filterTest() {
+		List<String> forms = new ArrayList<String>();
+		for (int i = 0; i < 10000; i++)
+			forms.add("word" + i);
+		List<String> ids = Arrays.asList("E0000001", "E0000002");
+		LexiconFilter filter = new LexiconFilter(forms, forms, ids,
+				LexiconFilter.DEFAULT_FALSE_POSITIVE_RATE);
+
+		for (String form : forms) {
+			Assert.assertTrue(filter.mightHaveBase(form));
+			Assert.assertTrue(filter.mightHaveVariant(form));
+		}
+		Assert.assertTrue(filter.mightHaveBase("WORD17"));
+		Assert.assertTrue(filter.mightHaveID("E0000002"));
+		Assert.assertFalse(filter.mightHaveID("word17"));
+
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++)
+			if (filter.mightHaveBase("other" + i))
+				falsePositives++;
+		Assert.assertTrue("false positives: " + falsePositives,
+				falsePositives < 300);
+	}
+
+	/**
+	 * A filter which has been saved and read back gives the same answers.
+	 */
+	@Test
+	public void writeTest() throws Exception {
+		List<String> forms = Arrays.asList("dog", "cat", "be");
+		List<String> variants = Arrays.asList("dog", "dogs", "cat", "cats", "be", "is", "were");
+		LexiconFilter filter = new LexiconFilter(forms, variants,
+				Arrays.asList("E0000001"), 0.001);
+
+		File file = File.createTempFile("lexicon", ".filter");
+		try {
+			filter.write(file);
+			LexiconFilter read = LexiconFilter.read(file);
+			Assert.assertEquals(filter.getBytes(), read.getBytes());
+			for (String variant : variants) {
+				Assert.assertTrue(read.mightHaveVariant(variant));
+				Assert.assertEquals(filter.mightHaveBase(variant), read.mightHaveBase(variant));
+			}
+			Assert.assertTrue(read.mightHaveID("E0000001"));
+			Assert.assertFalse(read.mightHaveVariant("giraffes"));
+		} finally {
+			file.delete();
+		}
+	}
+}
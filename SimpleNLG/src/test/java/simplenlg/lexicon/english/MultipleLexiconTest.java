@@ -29,6 +29,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import simplenlg.features.LexicalFeature;
+import simplenlg.framework.LexicalCategory;
 import simplenlg.framework.WordElement;
 import simplenlg.lexicon.MultipleLexicon;
 import simplenlg.lexicon.NIHDBLexicon;
@@ -98,5 +99,74 @@ public class MultipleLexiconTest {
 		lexicon.setAlwaysSearchAll(alwaysSearchAll);	
 	}
 
+	@Test
+	public void mergedIndexTest() {
+		// two XML lexicons, the first with an extra word
+		EnglishXMLLexicon overlay = new EnglishXMLLexicon(XML_FILENAME);
+		EnglishXMLLexicon base = new EnglishXMLLexicon(XML_FILENAME);
+		WordElement zorble = new WordElement("zorble", LexicalCategory.NOUN, "Z0000001");
+		overlay.updateIndex(zorble, "zorble", overlay.getIndexByBase());
+		overlay.updateIndex(zorble, "zorbles", overlay.getIndexByVariant());
+
+		MultipleLexicon plain = new MultipleLexicon(overlay, base);
+		MultipleLexicon merged = new MultipleLexicon(overlay, base);
+		merged.buildMergedIndex();
+		Assert.assertTrue(merged.isMerged());
+		Assert.assertFalse(merged.isDynamic(overlay));
+
+		// merged index gives the same results as searching each lexicon
+		for (boolean searchAll : new boolean[] { false, true }) {
+			plain.setAlwaysSearchAll(searchAll);
+			merged.setAlwaysSearchAll(searchAll);
+			for (String form : new String[] { "tree", "fish", "zorble", "xyzzy" }) {
+				Assert.assertEquals(plain.getWords(form).size(), merged.getWords(form).size());
+				Assert.assertEquals(plain.getWords(form, LexicalCategory.VERB).size(),
+						merged.getWords(form, LexicalCategory.VERB).size());
+			}
+			Assert.assertEquals(plain.getWordsFromVariant("zorbles").size(),
+					merged.getWordsFromVariant("zorbles").size());
+			Assert.assertEquals(plain.getWordsByID("E0027994").size(),
+					merged.getWordsByID("E0027994").size());
+		}
+		Assert.assertEquals(2, merged.getWords("tree").size());
+		Assert.assertEquals(1, merged.getWords("zorble").size());
+		Assert.assertEquals("zorble", merged.getWordFromVariant("zorbles").getBaseForm());
+
+		// words are copies, so changing them does not change the index
+		merged.getWords("zorble").get(0).setFeature(LexicalFeature.PROPER, true);
+		Assert.assertFalse(merged.getWords("zorble").get(0).getFeatureAsBoolean(LexicalFeature.PROPER));
+
+		// words added to an indexed lexicon are only found after a rebuild,
+		// unless the lexicon is dynamic
+		WordElement blorf = new WordElement("blorf", LexicalCategory.VERB, "Z0000002");
+		overlay.updateIndex(blorf, "blorf", overlay.getIndexByBase());
+		Assert.assertEquals(1, plain.getWords("blorf").size());
+		Assert.assertEquals(0, merged.getWords("blorf").size());
+		merged.setDynamic(overlay, true);
+		Assert.assertTrue(merged.isDynamic(overlay));
+		Assert.assertEquals(1, merged.getWords("blorf").size());
+
+		// dynamic lexicons can be searched in parallel
+		merged.setParallelSearch(true);
+		Assert.assertEquals(2, merged.getWords("tree").size());
+		Assert.assertEquals(1, merged.getWords("blorf").size());
+	}
+
+	/**
+	 * A word added to one of the lexicons is found by a lookup which missed
+	 * before it was added.
+	 */
+	@Test
+	public void childChangeTest() {
+		EnglishXMLLexicon child = new EnglishXMLLexicon(XML_FILENAME);
+		MultipleLexicon multi = new MultipleLexicon(child);
+		Assert.assertNull(multi.lookupWord("blorf", LexicalCategory.VERB).getId());
+
+		WordElement blorf = new WordElement("blorf", LexicalCategory.VERB, "Z0000002");
+		child.updateIndex(blorf, "blorf", child.getIndexByBase());
+		Assert.assertEquals("Z0000002", child.lookupWord("blorf", LexicalCategory.VERB).getId());
+		Assert.assertEquals("Z0000002", multi.lookupWord("blorf", LexicalCategory.VERB).getId());
+	}
+
 
 }
@@ -0,0 +1,106 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell, Saad Mahamood.
+ */
+package simplenlg.lexicon.english;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simplenlg.features.LexicalFeature;
+import simplenlg.framework.LexicalCategory;
+import simplenlg.framework.WordElement;
+import simplenlg.lexicon.Lexicon;
+import simplenlg.lexicon.OverlayLexicon;
+
+/**
+ * Tests for OverlayLexicon, over the default lexicon
+ */
+public class OverlayLexiconTest {
+
+	// shared lexicon
+	Lexicon base = null;
+
+	// lexicon object -- an instance of Lexicon
+	OverlayLexicon lexicon = null;
+
+	@Before
+	public void setUp() throws Exception {
+		this.base = Lexicon.getEnglishDefaultLexicon();
+		this.lexicon = new OverlayLexicon(base);
+	}
+
+	/**
+	 * Runs basic Lexicon tests.
+	 */
+	@Test
+	public void basicLexiconTests() {
+		SharedLexiconTests tests = new SharedLexiconTests();
+		tests.doBasicTests(lexicon);
+	}
+
+	/**
+	 * A word added to a mutable base lexicon is found by a lookup which
+	 * missed before it was added.
+	 */
+	@Test
+	public void baseChangeTest() {
+		EnglishXMLLexicon mutableBase = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml");
+		OverlayLexicon overlay = new OverlayLexicon(mutableBase);
+		Assert.assertNull(overlay.lookupWord("blorf", LexicalCategory.VERB).getId());
+
+		WordElement blorf = new WordElement("blorf", LexicalCategory.VERB, "Z0000002");
+		mutableBase.updateIndex(blorf, "blorf", mutableBase.getIndexByBase());
+		Assert.assertEquals("Z0000002", overlay.lookupWord("blorf", LexicalCategory.VERB).getId());
+	}
+
+	@Test
+	public void overlayTest() {
+		// a new word
+		WordElement zorble = new WordElement("zorble", LexicalCategory.NOUN, "Z0000001");
+		lexicon.addWord(zorble);
+		Assert.assertEquals(1, lexicon.size());
+		Assert.assertEquals("Z0000001", lexicon.getWord("zorble").getId());
+		Assert.assertEquals("zorble", lexicon.getWordFromVariant("zorbles").getBaseForm());
+		Assert.assertEquals("zorble", lexicon.getWordByID("Z0000001").getBaseForm());
+		Assert.assertFalse(base.hasWord("zorble"));
+
+		// an override of the noun "tree", which leaves other trees alone
+		String treeID = base.getWord("tree", LexicalCategory.NOUN).getId();
+		WordElement tree = new WordElement("tree", LexicalCategory.NOUN, "Z0000002");
+		tree.setFeature(LexicalFeature.PROPER, true);
+		lexicon.addWord(tree);
+		Assert.assertEquals(1, lexicon.getWords("tree").size());
+		Assert.assertEquals("Z0000002", lexicon.getWord("tree", LexicalCategory.NOUN).getId());
+		Assert.assertEquals(0, lexicon.getWords("tree", LexicalCategory.VERB).size());
+		Assert.assertEquals(treeID, base.getWord("tree", LexicalCategory.NOUN).getId());
+		Assert.assertEquals(1, lexicon.getWords("walk", LexicalCategory.VERB).size());
+
+		// words are copies, so changing them does not change the overlay
+		lexicon.getWord("tree").setFeature(LexicalFeature.PROPER, false);
+		Assert.assertTrue(lexicon.getWord("tree").getFeatureAsBoolean(LexicalFeature.PROPER));
+
+		// removing the override finds the base word again
+		lexicon.removeWord(tree);
+		Assert.assertEquals(treeID, lexicon.getWord("tree", LexicalCategory.NOUN).getId());
+		Assert.assertEquals(1, lexicon.size());
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell, Saad Mahamood.
+ */
+package simplenlg.lexicon.english;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simplenlg.framework.LexicalCategory;
+import simplenlg.lexicon.Lexicon;
+import simplenlg.lexicon.LexiconLoader;
+import simplenlg.lexicon.MultipleLexicon;
+import simplenlg.lexicon.ReloadableLexicon;
+
+/**
+ * Tests for ReloadableLexicon
+ */
+public class ReloadableLexiconTest {
+
+	// a lexicon which remembers whether it was closed
+	static class TestLexicon extends MultipleLexicon {
+		boolean closed = false;
+
+		TestLexicon() {
+			super(Lexicon.getEnglishDefaultLexicon());
+		}
+
+		@Override
+		public void close() {
+			// the default lexicon is shared, so it is not closed
+			closed = true;
+		}
+	}
+
+	// lexicon object -- an instance of Lexicon
+	ReloadableLexicon lexicon = null;
+
+	@Before
+	public void setUp() throws Exception {
+		this.lexicon = new ReloadableLexicon(new LexiconLoader() {
+			public Lexicon load() {
+				return new TestLexicon();
+			}
+		});
+	}
+
+	@Test
+	public void reloadTest() throws Exception {
+		TestLexicon first = (TestLexicon) lexicon.getLexicon();
+		Assert.assertEquals(1, lexicon.getVersion());
+		Assert.assertEquals(LexicalCategory.NOUN, lexicon.getWord("tree",
+				LexicalCategory.NOUN).getCategory());
+
+		// a task keeps its version after a reload
+		ReloadableLexicon.Version version = lexicon.acquire();
+		Assert.assertEquals(2, lexicon.reloadInBackground().get().intValue());
+		Assert.assertEquals(2, lexicon.getVersion());
+		Assert.assertNotSame(first, lexicon.getLexicon());
+		Assert.assertSame(first, version.getLexicon());
+		Assert.assertFalse(first.closed);
+		Assert.assertTrue(version.getLexicon().hasWord("tree"));
+
+		// and the old version is closed when the task is finished
+		version.release();
+		Assert.assertTrue(first.closed);
+		Assert.assertTrue(version.isClosed());
+
+		// swapping in a lexicon
+		TestLexicon third = new TestLexicon();
+		Assert.assertEquals(3, lexicon.swap(third));
+		Assert.assertSame(third, lexicon.getLexicon());
+		Assert.assertTrue(lexicon.hasWord("tree"));
+
+		lexicon.close();
+		Assert.assertTrue(third.closed);
+	}
+
+	@Test
+	public void sharedLexiconTest() throws Exception {
+		// the default lexicon belongs to the registry, so it is never closed
+		Lexicon shared = Lexicon.getEnglishDefaultLexicon();
+		ReloadableLexicon reloadable = new ReloadableLexicon(shared);
+
+		// swapping in the current lexicon again does not make a new version
+		Assert.assertEquals(1, reloadable.swap(shared));
+		Assert.assertSame(shared, reloadable.getLexicon());
+
+		Assert.assertEquals(2, reloadable.swap(new TestLexicon()));
+		reloadable.close();
+		Assert.assertTrue(shared.hasWord("tree"));
+	}
+
+}
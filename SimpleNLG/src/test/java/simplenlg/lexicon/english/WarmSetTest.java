@@ -0,0 +1,108 @@
+/*
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is "Simplenlg".
+ *
+ * The Initial Developer of the Original Code is Ehud Reiter, Albert Gatt and Dave Westwater.
+ * Portions created by Ehud Reiter, Albert Gatt and Dave Westwater are Copyright (C) 2010-11 The University of Aberdeen. All Rights Reserved.
+ *
+ * Contributor(s): Ehud Reiter, Albert Gatt, Dave Wewstwater, Roman Kutlak, Margaret Mitchell.
+ */
+package simplenlg.lexicon.english;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import simplenlg.framework.LexicalCategory;
+import simplenlg.lexicon.AbstractXMLLexicon;
+import simplenlg.lexicon.LexiconStatistics;
+import simplenlg.lexicon.ReloadableLexicon;
+import simplenlg.lexicon.WarmSet;
+import simplenlg.lexicon.WordKey;
+
+/**
+ * Tests for recording the words a lexicon is asked for, and preloading them.
+ */
+public class WarmSetTest {
+
+	/**
+	 * @return a lexicon which only builds words when they are looked up
+	 */
+	private static EnglishXMLLexicon lazyLexicon() {
+		return new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml", AbstractXMLLexicon.LoadMode.LAZY);
+	}
+
+	/**
+	 * Lookups are recorded once each, in order, and saved and read back.
+	 */
+	@Test
+	public void recordTest() throws Exception {
+		EnglishXMLLexicon lexicon = lazyLexicon();
+		WarmSet warmSet = new WarmSet();
+		lexicon.setWarmSet(warmSet);
+		lexicon.lookupWord("dog", LexicalCategory.NOUN);
+		lexicon.lookupWord("were");
+		lexicon.lookupWord("dog", LexicalCategory.NOUN);
+		lexicon.lookupWords(Arrays.asList(new WordKey("cat", LexicalCategory.NOUN)));
+		lexicon.getWords("giraffe");
+		Assert.assertEquals(Arrays.asList(new WordKey("dog", LexicalCategory.NOUN),
+				new WordKey("were"), new WordKey("cat", LexicalCategory.NOUN)), warmSet.getKeys());
+
+		File file = File.createTempFile("lexicon", ".warm");
+		try {
+			warmSet.write(file);
+			Assert.assertEquals(warmSet.getKeys(), WarmSet.read(file).getKeys());
+		} finally {
+			file.delete();
+		}
+
+		lexicon.setWarmSet(null);
+		lexicon.lookupWord("fish");
+		Assert.assertEquals(3, warmSet.size());
+
+		WarmSet small = new WarmSet(1);
+		small.record("dog", LexicalCategory.NOUN);
+		small.record("cat", LexicalCategory.NOUN);
+		Assert.assertEquals(1, small.size());
+	}
+
+	/**
+	 * Preloading a lazy lexicon builds the words of the warm set, and nothing
+	 * else.
+	 */
+	@Test
+	public void preloadTest() {
+		WarmSet warmSet = new WarmSet();
+		warmSet.record("dog", LexicalCategory.NOUN);
+		warmSet.record("were", LexicalCategory.ANY);
+
+		EnglishXMLLexicon lexicon = lazyLexicon();
+		long before = lexicon.getStatistics().getIndex(LexiconStatistics.WORDS).getBytes();
+		lexicon.preload(warmSet);
+		long after = lexicon.getStatistics().getIndex(LexiconStatistics.WORDS).getBytes();
+		Assert.assertTrue(after > before);
+		Assert.assertEquals("be", lexicon.lookupWord("were").getBaseForm());
+
+		// a new version of a reloadable lexicon is preloaded before it is used
+		ReloadableLexicon reloadable = new ReloadableLexicon(lazyLexicon());
+		reloadable.setWarmSet(warmSet);
+		EnglishXMLLexicon next = lazyLexicon();
+		before = next.getStatistics().getIndex(LexiconStatistics.WORDS).getBytes();
+		reloadable.swap(next);
+		Assert.assertTrue(next.getStatistics().getIndex(LexiconStatistics.WORDS).getBytes() > before);
+		Assert.assertEquals(2, warmSet.size());
+	}
+}
@@ -18,6 +18,15 @@
  */
 package simplenlg.lexicon.english;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import junit.framework.Assert;
 
 import org.junit.After;
@@ -25,10 +34,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import simplenlg.features.Feature;
+import simplenlg.features.Inflection;
+import simplenlg.features.LexicalFeature;
 import simplenlg.features.NumberAgreement;
 import simplenlg.features.Tense;
+import simplenlg.framework.LexicalCategory;
 import simplenlg.framework.NLGFactory;
+import simplenlg.framework.WordElement;
 import simplenlg.framework.english.EnglishNLGFactory;
+import simplenlg.lexicon.AbstractXMLLexicon;
+import simplenlg.lexicon.Lexicon;
+import simplenlg.lexicon.LexiconRegistry;
+import simplenlg.lexicon.LexiconStatistics;
+import simplenlg.lexicon.WordKey;
 import simplenlg.phrasespec.NPPhraseSpec;
 import simplenlg.phrasespec.PPPhraseSpec;
 import simplenlg.phrasespec.AbstractSPhraseSpec;
@@ -106,4 +124,382 @@ public class XMLLexiconTest {
 	    Assert.assertEquals(NumberAgreement.SINGULAR, wall.getFeature(Feature.NUMBER));    
 	}
 
+	/**
+	 * Tests that the default lexicon is loaded once and shared.
+	 */
+	@Test
+	public void sharedDefaultLexiconTest() {
+		Lexicon first = Lexicon.getEnglishDefaultLexicon();
+		Assert.assertSame(first, Lexicon.getEnglishDefaultLexicon());
+		Assert.assertSame(first, LexiconRegistry.getLexicon(LexiconRegistry.ENGLISH));
+		Assert.assertTrue(LexiconRegistry.isLoaded(LexiconRegistry.ENGLISH));
+
+		// shared lexicons cannot be changed
+		Assert.assertTrue(first.isReadOnly());
+		try {
+			((AbstractXMLLexicon) first).updateIndex(new WordElement("zorp", LexicalCategory.NOUN), "zorp",
+					((AbstractXMLLexicon) first).getIndexByBase());
+			Assert.fail("shared lexicon was changed");
+		} catch (IllegalStateException ex) {
+			Assert.assertFalse(first.hasWord("zorp"));
+		}
+		try {
+			first.setLookupCacheSize(0);
+			Assert.fail("shared lexicon was changed");
+		} catch (IllegalStateException ex) {
+			Assert.assertEquals(Lexicon.DEFAULT_LOOKUP_CACHE_SIZE, first.getLookupCacheSize());
+		}
+
+		// named lexicons can be registered as well
+		LexiconRegistry.register("xml-lexicon-test", lexicon);
+		try {
+			Assert.assertSame(lexicon, LexiconRegistry.getLexicon("xml-lexicon-test"));
+			Assert.assertTrue(lexicon.isReadOnly());
+		} finally {
+			LexiconRegistry.unregister("xml-lexicon-test");
+		}
+		Assert.assertFalse(LexiconRegistry.isLoaded("xml-lexicon-test"));
+	}
+
+	/**
+	 * Tests that prefix searches do not change a shared lexicon, so lookups in
+	 * other threads still find every word.
+	 */
+	@Test
+	public void sharedTrieTest() throws Exception {
+		// the trie of a shared lexicon is not built on demand
+		AbstractXMLLexicon shared = (AbstractXMLLexicon) Lexicon.getEnglishDefaultLexicon();
+		prefixWhileLookingUp(shared);
+		Assert.assertFalse(shared.isCompact());
+
+		// one built before the lexicon was shared can be searched
+		EnglishXMLLexicon trieLexicon = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml");
+		trieLexicon.buildTrie();
+		LexiconRegistry.register("xml-trie-test", trieLexicon);
+		try {
+			prefixWhileLookingUp(trieLexicon);
+			Assert.assertTrue(trieLexicon.getKeysWithPrefix("fish", 10).contains("fishes"));
+		} finally {
+			LexiconRegistry.unregister("xml-trie-test");
+		}
+	}
+
+	/**
+	 * run prefix searches in one thread while others look up words, and check
+	 * that each lookup finds the lexicon's word
+	 * 
+	 * @param shared
+	 *            - a read-only lexicon
+	 */
+	private static void prefixWhileLookingUp(final AbstractXMLLexicon shared) throws Exception {
+		final String[] forms = { "fish", "house", "sand", "walk", "was", "fishes" };
+		final String[] ids = new String[forms.length];
+		for (int i = 0; i < forms.length; i++)
+			ids[i] = shared.lookupWord(forms[i]).getId();
+
+		final boolean hasTrie = shared.isCompact();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		tasks.add(new Callable<Void>() {
+			public Void call() {
+				for (int i = 0; i < 50; i++) {
+					try {
+						Assert.assertFalse(shared.getKeysWithPrefix("fi", 100).isEmpty());
+						Assert.assertTrue(hasTrie);
+					} catch (IllegalStateException ex) {
+						Assert.assertFalse(hasTrie);
+					}
+				}
+				return null;
+			}
+		});
+		for (int thread = 0; thread < 3; thread++) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int i = 0; i < 500; i++) {
+						int form = i % forms.length;
+						Assert.assertFalse(shared.getWordsFromVariant(forms[form]).isEmpty());
+						Assert.assertEquals(ids[form], shared.lookupWord(forms[form]).getId());
+					}
+					return null;
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			// rethrows any failed assertion
+			for (Future<Void> result : executor.invokeAll(tasks))
+				result.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that words handed out by the lexicon can be changed without
+	 * affecting the lexicon entry or other copies of it.
+	 */
+	@Test
+	public void copyOnWriteTest() {
+		WordElement first = lexicon.getWord("sand", LexicalCategory.NOUN);
+		WordElement second = lexicon.getWord("sand", LexicalCategory.NOUN);
+
+		first.setFeature(LexicalFeature.PLURAL, "sands");
+		first.addInflectionalVariant(Inflection.IRREGULAR, LexicalFeature.PLURAL, "sands");
+
+		Assert.assertEquals("sands", first.getFeatureAsString(LexicalFeature.PLURAL));
+		Assert.assertNull(second.getFeatureAsString(LexicalFeature.PLURAL));
+		Assert.assertFalse(second.hasInflectionalVariant(Inflection.IRREGULAR));
+
+		WordElement third = lexicon.getWord("sand", LexicalCategory.NOUN);
+		Assert.assertNull(third.getFeatureAsString(LexicalFeature.PLURAL));
+		Assert.assertFalse(third.hasInflectionalVariant(Inflection.IRREGULAR));
+		Assert.assertEquals(Inflection.UNCOUNT, third.getDefaultInflectionalVariant());
+
+		// copies of a changed word are independent too
+		WordElement copy = new WordElement(first);
+		first.setFeature(LexicalFeature.PLURAL, "sandz");
+		Assert.assertEquals("sands", copy.getFeatureAsString(LexicalFeature.PLURAL));
+
+		// the inflectional variants map handed out belongs to the copy
+		WordElement fourth = lexicon.getWord("sand", LexicalCategory.NOUN);
+		fourth.getInflectionalVariants().clear();
+		Assert.assertTrue(lexicon.getWord("sand", LexicalCategory.NOUN).hasInflectionalVariant(Inflection.UNCOUNT));
+	}
+
+	@Test
+	public void lazyLoadTest() {
+		EnglishXMLLexicon lazyLexicon = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml", AbstractXMLLexicon.LoadMode.LAZY);
+		Assert.assertTrue(lazyLexicon.isLazy());
+		Assert.assertFalse(lexicon.isLazy());
+
+		// same words as the eager lexicon
+		Assert.assertEquals(lexicon.getWords("sand").size(), lazyLexicon.getWords("sand").size());
+		Assert.assertEquals(lexicon.getWord("sand", LexicalCategory.NOUN).getId(),
+				lazyLexicon.getWord("sand", LexicalCategory.NOUN).getId());
+		Assert.assertEquals("E0027994", lazyLexicon.getWord("fish", LexicalCategory.NOUN).getId());
+		Assert.assertEquals("be", lazyLexicon.getWordFromVariant("is").getBaseForm());
+		Assert.assertEquals("be", lazyLexicon.getWordFromVariant("was").getBaseForm());
+		Assert.assertEquals("sand", lazyLexicon.getWordByID(lexicon.getWord("sand", LexicalCategory.NOUN).getId()).getBaseForm());
+		Assert.assertEquals(lexicon.getAllWords().size(), lazyLexicon.getAllWords().size());
+
+		// words built on demand are the same as words built at load time
+		WordElement eager = lexicon.getWord("sand", LexicalCategory.NOUN);
+		WordElement lazy = lazyLexicon.getWord("sand", LexicalCategory.NOUN);
+		Assert.assertEquals(eager.getDefaultInflectionalVariant(), lazy.getDefaultInflectionalVariant());
+		Assert.assertEquals(eager.getAllFeatureNames(), lazy.getAllFeatureNames());
+
+		SharedLexiconTests tests = new SharedLexiconTests();
+		tests.doBasicTests(lazyLexicon);
+	}
+
+	@Test
+	public void parallelLoadTest() {
+		EnglishXMLLexicon parallelLexicon = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml", AbstractXMLLexicon.LoadMode.PARALLEL);
+		Assert.assertFalse(parallelLexicon.isLazy());
+
+		// same words and indices as a serial load
+		Assert.assertEquals(lexicon.getAllWords().size(), parallelLexicon.getAllWords().size());
+		Assert.assertEquals(lexicon.getIndexByBase().keySet(), parallelLexicon.getIndexByBase().keySet());
+		Assert.assertEquals(lexicon.getIndexByVariant().keySet(), parallelLexicon.getIndexByVariant().keySet());
+		Assert.assertEquals(lexicon.getIndexByID().keySet(), parallelLexicon.getIndexByID().keySet());
+		Assert.assertEquals(lexicon.getWords("fish").size(), parallelLexicon.getWords("fish").size());
+		Assert.assertEquals("E0027994", parallelLexicon.getWord("fish", LexicalCategory.NOUN).getId());
+
+		SharedLexiconTests tests = new SharedLexiconTests();
+		tests.doBasicTests(parallelLexicon);
+	}
+
+	@Test
+	public void compactIndexTest() {
+		EnglishXMLLexicon compactLexicon = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml");
+		compactLexicon.compactIndices();
+		Assert.assertTrue(compactLexicon.isCompact());
+		Assert.assertTrue(compactLexicon.getIndexByBase().isEmpty());
+
+		// same words as the map indices
+		Assert.assertEquals(lexicon.getWords("fish").size(), compactLexicon.getWords("fish").size());
+		Assert.assertEquals("E0027994", compactLexicon.getWord("fish", LexicalCategory.NOUN).getId());
+		Assert.assertEquals("be", compactLexicon.getWordFromVariant("is").getBaseForm());
+		Assert.assertEquals("be", compactLexicon.getWordFromVariant("was").getBaseForm());
+		Assert.assertTrue(compactLexicon.getWords("notaword").isEmpty());
+
+		// words indexed later are found too, and survive another compaction
+		WordElement word = new WordElement("zorp", LexicalCategory.NOUN);
+		compactLexicon.updateIndex(word, "zorp", compactLexicon.getIndexByBase());
+		Assert.assertEquals(1, compactLexicon.getWords("zorp").size());
+		compactLexicon.compactIndices();
+		Assert.assertEquals(1, compactLexicon.getWords("zorp").size());
+		Assert.assertEquals(lexicon.getWords("fish").size(), compactLexicon.getWords("fish").size());
+
+		SharedLexiconTests tests = new SharedLexiconTests();
+		tests.doBasicTests(compactLexicon);
+	}
+
+	@Test
+	public void trieTest() {
+		EnglishXMLLexicon trieLexicon = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml");
+		trieLexicon.buildTrie();
+		Assert.assertTrue(trieLexicon.isCompact());
+
+		// same words as the map indices
+		Assert.assertEquals(lexicon.getWords("fish").size(), trieLexicon.getWords("fish").size());
+		Assert.assertEquals("E0027994", trieLexicon.getWord("fish", LexicalCategory.NOUN).getId());
+		Assert.assertEquals("be", trieLexicon.getWordFromVariant("is").getBaseForm());
+		Assert.assertEquals("be", trieLexicon.getWordFromVariant("was").getBaseForm());
+		Assert.assertTrue(trieLexicon.getWords("fis").isEmpty());
+		Assert.assertTrue(trieLexicon.getWords("fishes").isEmpty());
+
+		// prefixes
+		List<String> keys = trieLexicon.getKeysWithPrefix("fish", 100);
+		Assert.assertEquals("fish", keys.get(0));
+		Assert.assertTrue(keys.contains("fishes"));
+		for (String key : keys)
+			Assert.assertTrue(key.startsWith("fish"));
+		Assert.assertEquals(3, trieLexicon.getKeysWithPrefix("fish", 3).size());
+		Assert.assertTrue(trieLexicon.getKeysWithPrefix("zzzzq", 10).isEmpty());
+
+		// edit distance
+		keys = trieLexicon.getKeysWithinDistance("fsh", 1, 100);
+		Assert.assertTrue(keys.contains("fish"));
+		Assert.assertTrue(keys.contains("ash"));
+		Assert.assertFalse(keys.contains("fishes"));
+		Assert.assertEquals("fish", trieLexicon.getKeysWithinDistance("fish", 1, 10).get(0));
+		Assert.assertEquals("sand", trieLexicon.getKeysWithinDistance("sand", 0, 10).get(0));
+		Assert.assertEquals(1, trieLexicon.getKeysWithinDistance("sand", 0, 10).size());
+
+		// compacting folds the trie back in
+		trieLexicon.compactIndices();
+		Assert.assertEquals(lexicon.getWords("fish").size(), trieLexicon.getWords("fish").size());
+
+		SharedLexiconTests tests = new SharedLexiconTests();
+		tests.doBasicTests(trieLexicon);
+	}
+
+	@Test
+	public void lookupCacheTest() {
+		EnglishXMLLexicon cacheLexicon = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml");
+
+		// unknown words are created once, and each caller gets its own view
+		WordElement first = cacheLexicon.lookupWord("Zorblax", LexicalCategory.NOUN);
+		WordElement second = cacheLexicon.lookupWord("Zorblax", LexicalCategory.NOUN);
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals("Zorblax", second.getBaseForm());
+		Assert.assertEquals(LexicalCategory.NOUN, second.getCategory());
+		first.setFeature(LexicalFeature.PLURAL, "Zorblaxen");
+		Assert.assertNull(cacheLexicon.lookupWord("Zorblax", LexicalCategory.NOUN)
+				.getFeatureAsString(LexicalFeature.PLURAL));
+		Assert.assertEquals(LexicalCategory.VERB,
+				cacheLexicon.lookupWord("Zorblax", LexicalCategory.VERB).getCategory());
+
+		// words added later are found
+		WordElement zorblax = new WordElement("Zorblax", LexicalCategory.NOUN, "Z1");
+		cacheLexicon.updateIndex(zorblax, "Zorblax", cacheLexicon.getIndexByBase());
+		Assert.assertEquals("Z1", cacheLexicon.lookupWord("Zorblax", LexicalCategory.NOUN).getId());
+
+		// known words are not affected
+		Assert.assertEquals("E0027994", cacheLexicon.lookupWord("fish", LexicalCategory.NOUN).getId());
+
+		cacheLexicon.setLookupCacheSize(0);
+		Assert.assertEquals(0, cacheLexicon.getLookupCacheSize());
+		Assert.assertEquals("Quuxly", cacheLexicon.lookupWord("Quuxly").getBaseForm());
+	}
+
+	@Test
+	public void resolveWordTest() {
+		// found by base form, variant or ID, as lookupWord would
+		Assert.assertEquals("E0027994", lexicon.resolveWord("fish", LexicalCategory.NOUN).getId());
+		Assert.assertEquals(LexicalCategory.VERB, lexicon.resolveWord("fish", LexicalCategory.VERB).getCategory());
+		Assert.assertEquals("be", lexicon.resolveWord("is", LexicalCategory.VERB).getBaseForm());
+		Assert.assertEquals("fish", lexicon.resolveWord("E0027994", LexicalCategory.ANY).getBaseForm());
+
+		// the same word as the list-based lookups
+		String[] forms = { "man", "men", "be", "was", "sand", "quickly", "UK", "uk" };
+		for (String form : forms) {
+			WordElement resolved = lexicon.resolveWord(form, LexicalCategory.ANY);
+			if (resolved == null) {
+				Assert.assertFalse(lexicon.hasWord(form) || lexicon.hasWordFromVariant(form));
+				continue;
+			}
+			WordElement expected = lexicon.hasWord(form) ? lexicon.getWord(form)
+					: lexicon.getWordFromVariant(form);
+			Assert.assertEquals(expected.getBaseForm(), resolved.getBaseForm());
+			Assert.assertEquals(expected.getId(), resolved.getId());
+		}
+
+		// a miss is null, and is not created
+		Assert.assertNull(lexicon.resolveWord("Zorblax", LexicalCategory.NOUN));
+		Assert.assertNull(lexicon.resolveWord("fish", LexicalCategory.ADVERB));
+
+		// each caller gets its own view
+		Assert.assertNotSame(lexicon.resolveWord("fish", LexicalCategory.NOUN),
+				lexicon.resolveWord("fish", LexicalCategory.NOUN));
+	}
+
+	@Test
+	public void lookupWordsTest() {
+		List<WordKey> keys = Arrays.asList(new WordKey("fish", LexicalCategory.NOUN),
+				new WordKey("fish", LexicalCategory.VERB), new WordKey("was"),
+				new WordKey("Zorblax", LexicalCategory.NOUN), new WordKey("fish", LexicalCategory.NOUN));
+		Map<WordKey, WordElement> words = lexicon.lookupWords(keys);
+
+		// one word per distinct key, in order
+		Assert.assertEquals(4, words.size());
+		Assert.assertEquals(new WordKey("fish", LexicalCategory.NOUN), words.keySet().iterator().next());
+
+		// same words as lookupWord
+		for (WordKey key : keys) {
+			WordElement expected = lexicon.lookupWord(key.getBaseForm(), key.getCategory());
+			Assert.assertEquals(expected.getBaseForm(), words.get(key).getBaseForm());
+			Assert.assertEquals(expected.getCategory(), words.get(key).getCategory());
+			Assert.assertEquals(expected.getId(), words.get(key).getId());
+		}
+		Assert.assertEquals("be", words.get(new WordKey("was")).getBaseForm());
+	}
+
+	@Test
+	public void statisticsTest() {
+		LexiconStatistics statistics = lexicon.getStatistics();
+		int words = lexicon.getAllWords().size();
+		Assert.assertEquals(words, statistics.getWordCount());
+		Assert.assertEquals(words, statistics.getIndex(LexiconStatistics.WORDS).getEntries());
+		Assert.assertTrue(statistics.getWordCount(LexicalCategory.NOUN) > 0);
+		Assert.assertTrue(statistics.getWordCount(LexicalCategory.VERB) > 0);
+		Assert.assertEquals(lexicon.getIndexByBase().size(),
+				statistics.getIndex(LexiconStatistics.INDEX_BY_BASE).getKeys());
+		Assert.assertEquals(lexicon.getIndexByVariant().size(),
+				statistics.getIndex(LexiconStatistics.INDEX_BY_VARIANT).getKeys());
+		Assert.assertEquals(lexicon.getIndexByID().size(),
+				statistics.getIndex(LexiconStatistics.INDEX_BY_ID).getKeys());
+		Assert.assertTrue(statistics.getIndex(LexiconStatistics.WORDS).getBytes() > 0);
+		Assert.assertTrue(statistics.getIndex(LexiconStatistics.INDEX_BY_BASE).getBytes() > 0);
+
+		// a lazy lexicon has the same words, but holds less
+		EnglishXMLLexicon lazyLexicon = new EnglishXMLLexicon("default-lexicon.xml",
+				"/simplenlg/lexicon/default-lexicon.xml", AbstractXMLLexicon.LoadMode.LAZY);
+		LexiconStatistics lazyStatistics = lazyLexicon.getStatistics();
+		Assert.assertEquals(statistics.getWordCounts(), lazyStatistics.getWordCounts());
+		Assert.assertEquals(statistics.getIndex(LexiconStatistics.INDEX_BY_VARIANT).getEntries(),
+				lazyStatistics.getIndex(LexiconStatistics.INDEX_BY_VARIANT).getEntries());
+		Assert.assertTrue(lazyStatistics.getBytes() < statistics.getBytes());
+
+		// compacting keeps the keys but shrinks the indices
+		lexicon.compactIndices();
+		LexiconStatistics compactStatistics = lexicon.getStatistics();
+		Assert.assertEquals(statistics.getIndex(LexiconStatistics.INDEX_BY_BASE).getKeys(),
+				compactStatistics.getIndex(LexiconStatistics.INDEX_BY_BASE).getKeys());
+		Assert.assertTrue(compactStatistics.getIndex(LexiconStatistics.INDEX_BY_BASE).getBytes()
+				< statistics.getIndex(LexiconStatistics.INDEX_BY_BASE).getBytes());
+
+		// words created for forms not in the lexicon
+		lexicon.lookupWord("notaword");
+		Assert.assertEquals(1, lexicon.getStatistics().getIndex(LexiconStatistics.LOOKUP_CACHE).getKeys());
+	}
+
 }
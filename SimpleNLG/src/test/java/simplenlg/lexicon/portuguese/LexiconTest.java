@@ -29,7 +29,9 @@ import simplenlg.features.Tense;
 import simplenlg.framework.InflectedWordElement;
 import simplenlg.framework.LexicalCategory;
 import simplenlg.framework.WordElement;
+import simplenlg.lexicon.AbstractXMLLexicon;
 import simplenlg.lexicon.Lexicon;
+import simplenlg.lexicon.LexiconStatistics;
 import simplenlg.realiser.english.Realiser;
 
 /**
@@ -128,5 +130,102 @@ public class LexiconTest {
 		Assert.assertEquals("sero", r.realise(inflWord).toString());
 		
 	}
-	
+
+	/**
+	 * Strings repeated in the lexicon file are shared between words.
+	 */
+	@Test
+	public void internTest() {
+		AbstractXMLLexicon lexicon = (AbstractXMLLexicon) Lexicon.getPortugueseDefaultLexicon();
+		WordElement noun = lexicon.getWord("riscador", LexicalCategory.NOUN);
+		WordElement adjective = lexicon.getWord("riscador", LexicalCategory.ADJECTIVE);
+		
+		Assert.assertNotSame(noun, adjective);
+		Assert.assertSame(noun.getBaseForm(), adjective.getBaseForm());
+		Assert.assertTrue(lexicon.getInternedStringCount() > 0);
+		Assert.assertTrue(lexicon.getInternedBytesSaved() > 0);
+	}
+
+	/**
+	 * Inflected forms are indexed as variants when the lexicon is loaded.
+	 */
+	@Test
+	public void inflectedFormTest() {
+		Lexicon lexicon = Lexicon.getPortugueseDefaultLexicon();
+
+		// verbs
+		Assert.assertEquals("desabotoar", lexicon.getWordFromVariant("desabotoamos", LexicalCategory.VERB).getBaseForm());
+		Assert.assertEquals("desabotoar", lexicon.getWordFromVariant("desabotoou", LexicalCategory.VERB).getBaseForm());
+		Assert.assertEquals("desabotoar", lexicon.getWordFromVariant("desabotoando", LexicalCategory.VERB).getBaseForm());
+		Assert.assertEquals("ser", lexicon.getWordFromVariant("sou", LexicalCategory.VERB).getBaseForm());
+		Assert.assertEquals(1, lexicon.getWordsFromVariant("foi", LexicalCategory.VERB).size());
+
+		// nouns and adjectives
+		Assert.assertEquals("mosquete", lexicon.getWordFromVariant("mosquetes", LexicalCategory.NOUN).getBaseForm());
+		Assert.assertEquals("lesionado", lexicon.getWordFromVariant("lesionadas", LexicalCategory.ADJECTIVE).getBaseForm());
+
+		// English forms are no longer generated
+		Assert.assertFalse(lexicon.hasWordFromVariant("desabotoared", LexicalCategory.VERB));
+	}
+
+	/**
+	 * UUID IDs are stored as two longs, and converted back when asked for.
+	 */
+	@Test
+	public void compactIdTest() {
+		Lexicon lexicon = Lexicon.getPortugueseDefaultLexicon();
+		String id = "febddf86-5908-4854-91fe-1447d88fd1bf";
+		WordElement word = lexicon.getWordByID(id);
+		Assert.assertEquals("rebolear", word.getBaseForm());
+		Assert.assertTrue(word.hasCompactId());
+		Assert.assertEquals(id, word.getId());
+		Assert.assertEquals(id, lexicon.getWord("rebolear", LexicalCategory.VERB).getId());
+		Assert.assertEquals(id, new WordElement(word).getId());
+		Assert.assertFalse(lexicon.hasWordByID(id.toUpperCase()));
+
+		// other IDs are kept as strings
+		WordElement other = new WordElement("zorble", LexicalCategory.NOUN, "Z0000001");
+		Assert.assertFalse(other.hasCompactId());
+		Assert.assertEquals("Z0000001", other.getId());
+		other.setId(id);
+		Assert.assertTrue(other.hasCompactId());
+		Assert.assertEquals(id, other.getId());
+
+		// words with a UUID ID and a string ID can be compared
+		WordElement stringId = new WordElement(word);
+		stringId.setId("Z0000001");
+		Assert.assertFalse(word.equals(stringId));
+		Assert.assertFalse(stringId.equals(word));
+		Assert.assertTrue(word.equals(new WordElement(word)));
+	}
+
+	/**
+	 * Forms with another case, decomposed accents or no accents are found
+	 * through the normalised index.
+	 */
+	@Test
+	public void normalisedIndexTest() {
+		AbstractXMLLexicon lexicon = new PortugueseXMLLexicon("default-portuguese-lexicon.xml",
+				"src/main/resources/default-portuguese-lexicon.xml");
+		String base = "globaliza\u00e7\u00e3o";
+		String id = lexicon.getWord(base, LexicalCategory.NOUN).getId();
+		Assert.assertNull(lexicon.lookupWord("globalizacao").getId());
+		Assert.assertTrue(lexicon.getWordsFromNormalised("globalizacao", LexicalCategory.ANY).isEmpty());
+
+		lexicon.buildNormalisedIndex();
+		Assert.assertTrue(lexicon.isNormalised());
+		Assert.assertEquals(id, lexicon.lookupWord("globalizacao").getId());
+		Assert.assertEquals(id, lexicon.lookupWord("GLOBALIZA\u00c7\u00c3O", LexicalCategory.NOUN).getId());
+		Assert.assertEquals(id, lexicon.lookupWord("globalizac\u0327a\u0303o").getId());
+		Assert.assertEquals(id, lexicon.lookupWord("globalizacoes").getId());
+		Assert.assertEquals(base, lexicon.lookupWord("Globalizacao").getBaseForm());
+		Assert.assertNull(lexicon.lookupWord("globalizacao", LexicalCategory.VERB).getId());
+		Assert.assertEquals(1, lexicon.getWordsFromNormalised("globalizacao", LexicalCategory.NOUN).size());
+		Assert.assertEquals("globalizacao", AbstractXMLLexicon.normalise("Globaliza\u00e7\u00e3o"));
+
+		// forms in the lexicon are still found as given
+		Assert.assertEquals("rebolear", lexicon.lookupWord("rebolear").getBaseForm());
+		Assert.assertTrue(lexicon.getStatistics().getIndex(LexiconStatistics.NORMALISED_INDEX).getKeys() > 0);
+	}
+
 }